@@ -0,0 +1,187 @@
+package io.github.sac.codec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encode and decode cost of the available codecs on typical SocketCluster envelopes.
+ * Encoded sizes are printed once per trial.
+ *
+ * Run with: ./gradlew jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    @Param({"json", "minbin", "cbor", "smile"})
+    public String codecName;
+
+    @Param({"tick", "emit", "response", "snapshot", "binary"})
+    public String payload;
+
+    private SocketClusterBufferCodec codec;
+    private ObjectNode envelope;
+    private ByteBuffer encoded;
+    private ByteBufferOutputStream buffer;
+
+    @Setup
+    public void setup() throws IOException {
+        codec = createCodec(codecName);
+        envelope = createEnvelope(payload);
+        buffer = new ByteBufferOutputStream(4096);
+
+        codec.encode(envelope.deepCopy(), buffer);
+        encoded = ByteBuffer.wrap(buffer.toByteArray());
+        System.out.println(codecName + "/" + payload + " encoded size: " + encoded.remaining() + " bytes");
+    }
+
+    @Benchmark
+    public int encode() throws CodecException {
+        buffer.reset();
+        // Codecs compress the envelope in place, as Socket builds a fresh tree per message
+        codec.encode(envelope.deepCopy(), buffer);
+        return buffer.size();
+    }
+
+    @Benchmark
+    public JsonNode decode() throws CodecException {
+        return codec.decode(encoded);
+    }
+
+    private static SocketClusterBufferCodec createCodec(String name) {
+        switch (name) {
+            case "minbin":
+                return new MinBinCodec();
+            case "cbor":
+                return new CborCodec();
+            case "smile":
+                return new SmileCodec();
+            default:
+                return new JsonCodec();
+        }
+    }
+
+    private static ObjectNode createEnvelope(String shape) {
+        ObjectNode envelope = mapper.createObjectNode();
+        switch (shape) {
+            case "tick": {
+                ObjectNode tick = mapper.createObjectNode()
+                        .put("s", "EURUSD")
+                        .put("b", 1.08412)
+                        .put("a", 1.08415)
+                        .put("t", 1500000000000L);
+                return publish(envelope, "ticks.EURUSD", tick);
+            }
+            case "emit": {
+                ObjectNode data = mapper.createObjectNode();
+                data.put("user", "user-42").put("room", "lobby").put("message", "Hello there, how are you doing?");
+                data.putArray("tags").add("greeting").add("chat");
+                envelope.put("event", "chat");
+                envelope.set("data", data);
+                envelope.put("cid", 42);
+                return envelope;
+            }
+            case "response": {
+                envelope.put("rid", 42);
+                envelope.putNull("error");
+                envelope.set("data", mapper.createObjectNode().put("status", "ok").put("count", 12));
+                return envelope;
+            }
+            case "snapshot": {
+                ArrayNode rows = mapper.createArrayNode();
+                for (int i = 0; i < 500; i++) {
+                    rows.addObject()
+                            .put("symbol", "SYM" + (i % 50))
+                            .put("side", i % 2 == 0 ? "buy" : "sell")
+                            .put("status", "open")
+                            .put("price", 100.0 + i / 100.0)
+                            .put("quantity", i * 10);
+                }
+                return publish(envelope, "orders.snapshot", rows);
+            }
+            default: {
+                byte[] blob = new byte[16 * 1024];
+                new Random(7).nextBytes(blob);
+                return publish(envelope, "tiles", mapper.getNodeFactory().binaryNode(blob));
+            }
+        }
+    }
+
+    private static ObjectNode publish(ObjectNode envelope, String channel, JsonNode data) {
+        ObjectNode publishData = mapper.createObjectNode();
+        publishData.put("channel", channel);
+        publishData.set("data", data);
+        envelope.put("event", "#publish");
+        envelope.set("data", publishData);
+        envelope.put("cid", 7);
+        return envelope;
+    }
+
+    /**
+     * Baseline matching the uncompressed JSON text transport
+     */
+    private static class JsonCodec implements SocketClusterBufferCodec {
+
+        @Override
+        public byte[] encode(JsonNode data) {
+            try {
+                return mapper.writeValueAsBytes(data);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public JsonNode decode(byte[] data) {
+            try {
+                return mapper.readTree(data);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void encode(JsonNode data, OutputStream out) throws CodecException {
+            try {
+                mapper.writeValue(out, data);
+            } catch (IOException e) {
+                throw new CodecException("Unable to encode data", e);
+            }
+        }
+
+        @Override
+        public JsonNode decode(ByteBuffer data) throws CodecException {
+            try {
+                return mapper.readValue(data.array(), data.arrayOffset() + data.position(), data.remaining(),
+                        JsonNode.class);
+            } catch (IOException e) {
+                throw new CodecException("Unable to decode data", e);
+            }
+        }
+    }
+}
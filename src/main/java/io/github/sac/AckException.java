@@ -0,0 +1,28 @@
+package io.github.sac;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Error response received from the server for an {@link AckFuture} request
+ */
+public class AckException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final JsonNode error;
+
+    public AckException(String name, JsonNode error) {
+        super("Error response for " + name + ": " + error);
+        this.name = name;
+        this.error = error;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public JsonNode getError() {
+        return error;
+    }
+}
@@ -0,0 +1,236 @@
+package io.github.sac;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pending response of a request sent with {@link Socket#emitAsync} or {@link Socket#publishAsync}.
+ * Server errors fail the future with an {@link AckException}, a missing response with a {@link TimeoutException}.
+ * Callbacks run on the thread completing the future, which is the websocket reading thread for responses.
+ */
+public class AckFuture implements Future<JsonNode> {
+
+    private final static Logger LOGGER = Logger.getLogger(AckFuture.class.getName());
+
+    private static final int PENDING = 0;
+    private static final int SUCCEEDED = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+
+    private final String name;
+    private int state = PENDING;
+    private JsonNode data;
+    private Throwable cause;
+    private List<Callback> callbacks;
+    private List<Runnable> completionHooks;
+
+    public interface Callback {
+        void onSuccess(String name, JsonNode data);
+
+        void onFailure(String name, Throwable cause);
+    }
+
+    AckFuture(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return event or channel name of the request
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Adds a callback, which is called right away if the future is already complete
+     */
+    public AckFuture addCallback(Callback callback) {
+        synchronized (this) {
+            if (state == PENDING) {
+                if (callbacks == null) {
+                    callbacks = new ArrayList<>(1);
+                }
+                callbacks.add(callback);
+                return this;
+            }
+        }
+        notify(callback);
+        return this;
+    }
+
+    /**
+     * @return future completing with an array of all results in order, or failing with the first failure
+     */
+    public static AckFuture allOf(final List<AckFuture> futures) {
+        final AckFuture all = new AckFuture("all");
+        final JsonNode[] results = new JsonNode[futures.size()];
+        final AtomicInteger remaining = new AtomicInteger(futures.size());
+
+        if (futures.isEmpty()) {
+            all.succeed(JsonNodeFactory.instance.arrayNode());
+            return all;
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            final int index = i;
+            futures.get(i).addCallback(new Callback() {
+                public void onSuccess(String name, JsonNode data) {
+                    results[index] = data;
+                    if (remaining.decrementAndGet() == 0) {
+                        ArrayNode array = JsonNodeFactory.instance.arrayNode();
+                        for (JsonNode result : results) {
+                            array.add(result);
+                        }
+                        all.succeed(array);
+                    }
+                }
+
+                public void onFailure(String name, Throwable cause) {
+                    all.fail(cause);
+                }
+            });
+        }
+        return all;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return complete(CANCELLED, null, new CancellationException("Request " + name + " cancelled"));
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return state != PENDING;
+    }
+
+    @Override
+    public synchronized JsonNode get() throws InterruptedException, ExecutionException {
+        while (state == PENDING) {
+            wait();
+        }
+        return result();
+    }
+
+    @Override
+    public synchronized JsonNode get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (state == PENDING) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException("No response for " + name);
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return result();
+    }
+
+    private JsonNode result() throws ExecutionException {
+        if (state == SUCCEEDED) {
+            return data;
+        }
+        if (state == CANCELLED) {
+            throw (CancellationException) cause;
+        }
+        throw new ExecutionException(cause);
+    }
+
+    /**
+     * Completes the future from a server response
+     */
+    boolean complete(JsonNode error, JsonNode data) {
+        if (error != null && !error.isNull()) {
+            return fail(new AckException(name, error));
+        }
+        return succeed(data);
+    }
+
+    boolean succeed(JsonNode data) {
+        return complete(SUCCEEDED, data, null);
+    }
+
+    boolean fail(Throwable cause) {
+        return complete(FAILED, null, cause);
+    }
+
+    /**
+     * Runs {@code hook} once the future is complete, used to release the request's resources
+     */
+    void onComplete(Runnable hook) {
+        synchronized (this) {
+            if (state == PENDING) {
+                if (completionHooks == null) {
+                    completionHooks = new ArrayList<>(1);
+                }
+                completionHooks.add(hook);
+                return;
+            }
+        }
+        hook.run();
+    }
+
+    private boolean complete(int state, JsonNode data, Throwable cause) {
+        List<Runnable> hooks;
+        List<Callback> callbacks;
+        synchronized (this) {
+            if (this.state != PENDING) {
+                return false;
+            }
+            this.state = state;
+            this.data = data;
+            this.cause = cause;
+            hooks = completionHooks;
+            callbacks = this.callbacks;
+            completionHooks = null;
+            this.callbacks = null;
+            notifyAll();
+        }
+
+        if (hooks != null) {
+            for (Runnable hook : hooks) {
+                hook.run();
+            }
+        }
+        if (callbacks != null) {
+            for (Callback callback : callbacks) {
+                notify(callback);
+            }
+        }
+        return true;
+    }
+
+    private void notify(Callback callback) {
+        JsonNode data;
+        Throwable cause;
+        synchronized (this) {
+            data = this.data;
+            cause = this.cause;
+        }
+        try {
+            if (cause == null) {
+                callback.onSuccess(name, data);
+            } else {
+                callback.onFailure(name, cause);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Callback of " + name + " failed", e);
+        }
+    }
+}
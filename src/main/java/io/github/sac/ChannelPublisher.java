@@ -0,0 +1,239 @@
+package io.github.sac;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reactive Streams {@link Publisher} of the messages of a channel, created with {@link Socket.Channel#toPublisher}.
+ * Every subscriber gets its own bounded buffer, messages are delivered only as far as the subscriber requested them
+ * and the {@link OverflowStrategy} decides what happens to messages arriving at a full buffer.
+ * Messages are delivered on the thread receiving them or on the thread calling {@link Subscription#request}.
+ */
+public class ChannelPublisher implements Publisher<JsonNode>, Emitter.Listener {
+
+    public enum OverflowStrategy {
+        /**
+         * Drop the oldest buffered message
+         */
+        DROP_OLDEST,
+        /**
+         * Drop the arriving message
+         */
+        DROP_LATEST,
+        /**
+         * Fail the subscriber with an {@link IllegalStateException}
+         */
+        ERROR,
+        /**
+         * Block the socket's reading thread until the subscriber requests more, which stalls all channels of the
+         * socket and in turn the server
+         */
+        BLOCK
+    }
+
+    private final String channelName;
+    private final int bufferSize;
+    private final OverflowStrategy overflowStrategy;
+    private final CopyOnWriteArrayList<ChannelSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean completed;
+
+    ChannelPublisher(String channelName, int bufferSize, OverflowStrategy overflowStrategy) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+        }
+        this.channelName = channelName;
+        this.bufferSize = bufferSize;
+        this.overflowStrategy = overflowStrategy;
+    }
+
+    public String getChannelName() {
+        return channelName;
+    }
+
+    /**
+     * @return messages dropped for all subscribers because of full buffers
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super JsonNode> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber must not be null");
+        }
+        ChannelSubscription subscription = new ChannelSubscription(subscriber);
+        subscriptions.add(subscription);
+        subscriber.onSubscribe(subscription);
+        if (completed) {
+            subscription.complete();
+        }
+    }
+
+    @Override
+    public void call(String name, JsonNode data) {
+        for (ChannelSubscription subscription : subscriptions) {
+            subscription.offer(data);
+        }
+    }
+
+    /**
+     * Completes all subscribers, called when the channel is unsubscribed
+     */
+    void complete() {
+        completed = true;
+        for (ChannelSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    private class ChannelSubscription implements Subscription {
+
+        private final Subscriber<? super JsonNode> subscriber;
+        private final ArrayDeque<JsonNode> queue = new ArrayDeque<>();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private boolean done;
+        private Throwable error;
+
+        ChannelSubscription(Subscriber<? super JsonNode> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(JsonNode data) {
+            synchronized (this) {
+                if (cancelled || done) {
+                    return;
+                }
+                if (queue.size() >= bufferSize) {
+                    switch (overflowStrategy) {
+                        case DROP_OLDEST:
+                            queue.poll();
+                            dropped.incrementAndGet();
+                            break;
+                        case DROP_LATEST:
+                            dropped.incrementAndGet();
+                            return;
+                        case ERROR:
+                            queue.clear();
+                            error = new IllegalStateException("Buffer of " + bufferSize + " messages of channel "
+                                    + channelName + " overflowed");
+                            done = true;
+                            break;
+                        case BLOCK:
+                            boolean interrupted = false;
+                            while (queue.size() >= bufferSize && !cancelled) {
+                                try {
+                                    wait();
+                                } catch (InterruptedException e) {
+                                    interrupted = true;
+                                }
+                            }
+                            if (interrupted) {
+                                Thread.currentThread().interrupt();
+                            }
+                            if (cancelled) {
+                                return;
+                            }
+                            break;
+                    }
+                }
+                if (!done) {
+                    queue.add(data);
+                }
+            }
+            drain();
+        }
+
+        void complete() {
+            synchronized (this) {
+                done = true;
+            }
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                synchronized (this) {
+                    queue.clear();
+                    error = new IllegalArgumentException("Rule 3.9: request must be positive, got " + n);
+                    done = true;
+                }
+            } else {
+                long current;
+                long next;
+                do {
+                    current = requested.get();
+                    next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!requested.compareAndSet(current, next));
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            synchronized (this) {
+                queue.clear();
+                notifyAll();
+            }
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                long demand = requested.get();
+                long emitted = 0;
+
+                while (!cancelled) {
+                    JsonNode next;
+                    boolean terminated;
+                    Throwable failure;
+                    synchronized (this) {
+                        failure = error;
+                        next = failure == null && emitted != demand ? queue.poll() : null;
+                        terminated = done && (failure != null || queue.isEmpty());
+                        if (next != null) {
+                            notifyAll();
+                        }
+                    }
+
+                    if (next != null) {
+                        subscriber.onNext(next);
+                        emitted++;
+                        continue;
+                    }
+                    if (terminated) {
+                        cancelled = true;
+                        subscriptions.remove(ChannelSubscription.this);
+                        if (failure != null) {
+                            subscriber.onError(failure);
+                        } else {
+                            subscriber.onComplete();
+                        }
+                    }
+                    break;
+                }
+
+                if (emitted != 0 && demand != Long.MAX_VALUE) {
+                    requested.addAndGet(-emitted);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package io.github.sac;
+
+import java.util.zip.Deflater;
+
+/**
+ * Applies a {@link CompressionPolicy} to outgoing messages of a socket and records its {@link CompressionStats}.
+ * Compression itself happens in the websocket writing thread, so its cost is estimated by deflating a sample
+ * of the messages here.
+ */
+class CompressionController {
+
+    /**
+     * Compressed messages per adaptive decision
+     */
+    private static final int DECISION_WINDOW = 64;
+
+    /**
+     * One in this many compressed messages is deflated to sample the CPU cost
+     */
+    private static final int COST_SAMPLE_INTERVAL = 32;
+
+    /**
+     * Only the start of larger messages is deflated, the cost is taken per byte
+     */
+    private static final int MAX_SAMPLE_SIZE = 16 * 1024;
+
+    private static final int MAX_BACKOFF_FACTOR = 64;
+
+    private final CompressionPolicy policy;
+    private final CompressionStats stats = new CompressionStats();
+    private Deflater deflater;
+    private byte[] sampleBuffer;
+
+    private int windowMessages;
+    private long windowBytesBefore;
+    private long windowBytesAfter;
+    private int backoffRemaining;
+    private int backoffFactor = 1;
+    private int sinceCostSample;
+
+    CompressionController(CompressionPolicy policy) {
+        this.policy = policy;
+    }
+
+    CompressionStats getStats() {
+        return stats;
+    }
+
+    synchronized boolean shouldCompress(int payloadLength) {
+        if (payloadLength < policy.minMessageSize) {
+            stats.recordUncompressed();
+            return false;
+        }
+        if (!policy.adaptive) {
+            return true;
+        }
+        if (backoffRemaining > 0) {
+            if (--backoffRemaining == 0) {
+                stats.setBackedOff(false);
+            }
+            stats.recordUncompressed();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Called before a compressible message is queued, outside of the send lock, samples its compression cost now
+     * and then
+     */
+    synchronized void beforeCompress(byte[] payload) {
+        if (!policy.adaptive || ++sinceCostSample < COST_SAMPLE_INTERVAL) {
+            return;
+        }
+        sinceCostSample = 0;
+
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            sampleBuffer = new byte[8192];
+        }
+        int length = Math.min(payload.length, MAX_SAMPLE_SIZE);
+        long start = System.nanoTime();
+        deflater.reset();
+        deflater.setInput(payload, 0, length);
+        deflater.finish();
+        while (!deflater.finished()) {
+            deflater.deflate(sampleBuffer);
+        }
+        double sample = (double) (System.nanoTime() - start) / Math.max(1, length);
+
+        double previous = stats.getNanosPerByte();
+        stats.setNanosPerByte(previous == 0 ? sample : (previous * 3 + sample) / 4);
+    }
+
+    /**
+     * Frees the native memory of the sampling deflater, which is created again by the next sample
+     */
+    synchronized void release() {
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+            sampleBuffer = null;
+        }
+    }
+
+    /**
+     * Called from the writing thread with the payload size before and after permessage-deflate
+     */
+    synchronized void onCompressed(int before, int after) {
+        stats.recordCompressed(before, after);
+        if (!policy.adaptive) {
+            return;
+        }
+
+        windowMessages++;
+        windowBytesBefore += before;
+        windowBytesAfter += after;
+        if (windowMessages < DECISION_WINDOW) {
+            return;
+        }
+
+        double ratio = (double) windowBytesAfter / windowBytesBefore;
+        long saved = windowBytesBefore - windowBytesAfter;
+        double costNanos = stats.getNanosPerByte() * windowBytesBefore;
+        windowMessages = 0;
+        windowBytesBefore = 0;
+        windowBytesAfter = 0;
+
+        if (ratio <= policy.maxCompressionRatio && saved > 0 && costNanos / saved <= policy.maxNanosPerSavedByte) {
+            backoffFactor = 1;
+            return;
+        }
+
+        backoffRemaining = policy.backoffMessages * backoffFactor;
+        backoffFactor = Math.min(backoffFactor * 2, MAX_BACKOFF_FACTOR);
+        stats.setBackedOff(true);
+    }
+}
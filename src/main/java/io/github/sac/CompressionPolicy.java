@@ -0,0 +1,138 @@
+package io.github.sac;
+
+/**
+ * permessage-deflate settings of a {@link Socket}.
+ * Messages smaller than the minimum message size are sent uncompressed, in adaptive mode compression
+ * is also skipped for a while when it doesn't save enough bytes for the CPU time it costs.
+ */
+public class CompressionPolicy {
+
+    /**
+     * Maximum LZ77 window bits of client to server compression, 8 - 15.
+     * Default: 0, parameter offered without a value so that the server may choose
+     */
+
+    int clientMaxWindowBits;
+
+    /**
+     * Maximum LZ77 window bits of server to client compression, 8 - 15.
+     * Default: 0, not requested
+     */
+
+    int serverMaxWindowBits;
+
+    boolean clientNoContextTakeover;
+
+    boolean serverNoContextTakeover;
+
+    /**
+     * Messages with payloads smaller than this number of bytes are sent uncompressed.
+     * Default: 0
+     */
+
+    int minMessageSize;
+
+    boolean adaptive;
+
+    /**
+     * Adaptive mode backs off when compressed size / original size of the last sample window is above this.
+     * Default: 0.9
+     */
+
+    double maxCompressionRatio;
+
+    /**
+     * Adaptive mode backs off when the estimated compression time per saved byte is above this.
+     * Default: 200 ns
+     */
+
+    long maxNanosPerSavedByte;
+
+    /**
+     * Number of compressible messages sent uncompressed after the first back off, doubled on every
+     * consecutive back off up to 64 times this value.
+     * Default: 256
+     */
+
+    int backoffMessages;
+
+    public CompressionPolicy() {
+        minMessageSize = 0;
+        adaptive = false;
+        maxCompressionRatio = 0.9;
+        maxNanosPerSavedByte = 200;
+        backoffMessages = 256;
+    }
+
+    public CompressionPolicy setClientMaxWindowBits(int bits) {
+        clientMaxWindowBits = checkWindowBits(bits);
+        return this;
+    }
+
+    public CompressionPolicy setServerMaxWindowBits(int bits) {
+        serverMaxWindowBits = checkWindowBits(bits);
+        return this;
+    }
+
+    public CompressionPolicy setClientNoContextTakeover(boolean noContextTakeover) {
+        clientNoContextTakeover = noContextTakeover;
+        return this;
+    }
+
+    public CompressionPolicy setServerNoContextTakeover(boolean noContextTakeover) {
+        serverNoContextTakeover = noContextTakeover;
+        return this;
+    }
+
+    public CompressionPolicy setMinMessageSize(int bytes) {
+        minMessageSize = bytes;
+        return this;
+    }
+
+    public CompressionPolicy setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+        return this;
+    }
+
+    public CompressionPolicy setMaxCompressionRatio(double ratio) {
+        maxCompressionRatio = ratio;
+        return this;
+    }
+
+    public CompressionPolicy setMaxNanosPerSavedByte(long nanos) {
+        maxNanosPerSavedByte = nanos;
+        return this;
+    }
+
+    public CompressionPolicy setBackoffMessages(int messages) {
+        backoffMessages = messages;
+        return this;
+    }
+
+    private static int checkWindowBits(int bits) {
+        if (bits != 0 && (bits < 8 || bits > 15)) {
+            throw new IllegalArgumentException("Window bits must be within 8 - 15: " + bits);
+        }
+        return bits;
+    }
+
+    /**
+     * @return permessage-deflate extension offer
+     */
+    String toExtension() {
+        StringBuilder builder = new StringBuilder("permessage-deflate; client_max_window_bits");
+        if (clientMaxWindowBits != 0) {
+            builder.append('=').append(clientMaxWindowBits);
+        }
+        if (serverMaxWindowBits != 0) {
+            builder.append("; server_max_window_bits=").append(serverMaxWindowBits);
+        }
+        if (clientNoContextTakeover) {
+            builder.append("; client_no_context_takeover");
+        }
+        if (serverNoContextTakeover) {
+            builder.append("; server_no_context_takeover");
+        }
+        return builder.toString();
+    }
+}
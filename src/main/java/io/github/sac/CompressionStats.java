@@ -0,0 +1,93 @@
+package io.github.sac;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outbound compression counters of a {@link Socket}
+ */
+public class CompressionStats {
+
+    private final AtomicLong compressedMessages = new AtomicLong();
+    private final AtomicLong uncompressedMessages = new AtomicLong();
+    private final AtomicLong bytesBeforeCompression = new AtomicLong();
+    private final AtomicLong bytesAfterCompression = new AtomicLong();
+    private final AtomicLong backoffs = new AtomicLong();
+    private volatile double nanosPerByte;
+    private volatile boolean backedOff;
+
+    /**
+     * @return messages handed to permessage-deflate
+     */
+    public long getCompressedMessages() {
+        return compressedMessages.get();
+    }
+
+    /**
+     * @return messages sent uncompressed because of their size or an adaptive back off
+     */
+    public long getUncompressedMessages() {
+        return uncompressedMessages.get();
+    }
+
+    public long getBytesBeforeCompression() {
+        return bytesBeforeCompression.get();
+    }
+
+    public long getBytesAfterCompression() {
+        return bytesAfterCompression.get();
+    }
+
+    /**
+     * @return compressed size / original size of all compressed messages, 1 if none were sent
+     */
+    public double getCompressionRatio() {
+        long before = bytesBeforeCompression.get();
+        return before == 0 ? 1 : (double) bytesAfterCompression.get() / before;
+    }
+
+    /**
+     * @return sampled compression cost estimate in nanoseconds per input byte
+     */
+    public double getNanosPerByte() {
+        return nanosPerByte;
+    }
+
+    public long getBackoffs() {
+        return backoffs.get();
+    }
+
+    public boolean isBackedOff() {
+        return backedOff;
+    }
+
+    void recordCompressed(int before, int after) {
+        compressedMessages.incrementAndGet();
+        bytesBeforeCompression.addAndGet(before);
+        bytesAfterCompression.addAndGet(after);
+    }
+
+    void recordUncompressed() {
+        uncompressedMessages.incrementAndGet();
+    }
+
+    void setNanosPerByte(double nanos) {
+        nanosPerByte = nanos;
+    }
+
+    void setBackedOff(boolean backedOff) {
+        if (backedOff && !this.backedOff) {
+            backoffs.incrementAndGet();
+        }
+        this.backedOff = backedOff;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionStats{compressed=" + getCompressedMessages()
+                + ", uncompressed=" + getUncompressedMessages()
+                + ", ratio=" + getCompressionRatio()
+                + ", nanosPerByte=" + getNanosPerByte()
+                + ", backoffs=" + getBackoffs()
+                + ", backedOff=" + isBackedOff() + "}";
+    }
+}
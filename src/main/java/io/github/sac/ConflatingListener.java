@@ -0,0 +1,171 @@
+package io.github.sac;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Listener keeping only the newest undelivered message, per value of a key field if one is given, and handing
+ * it to the wrapped listener on an executor once the listener is done with the previous one.
+ * Keys are delivered in the order they first became pending, so busy keys don't starve quiet ones.
+ */
+public class ConflatingListener implements Emitter.Listener {
+
+    private final static Logger LOGGER = Logger.getLogger(ConflatingListener.class.getName());
+
+    private static final String NO_KEY = "";
+
+    private static ExecutorService defaultExecutor;
+
+    private final Emitter.Listener listener;
+    private final String keyField;
+    private final int maxKeys;
+    private final Executor executor;
+
+    private final LinkedHashMap<String, JsonNode> pending = new LinkedHashMap<>();
+    private String name;
+    private boolean scheduled;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong conflated = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Runnable drain = new Runnable() {
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * @param listener - listener receiving the conflated messages
+     * @param keyField - payload field whose value keys the conflation, null to keep only the newest message
+     * @param maxKeys - maximum number of pending keys, the oldest pending key is dropped beyond it
+     * @param executor - executor the listener is called on, null for a shared daemon thread pool
+     */
+    public ConflatingListener(Emitter.Listener listener, String keyField, int maxKeys, Executor executor) {
+        if (maxKeys < 1) {
+            throw new IllegalArgumentException("maxKeys must be at least 1, was " + maxKeys);
+        }
+        this.listener = listener;
+        this.keyField = keyField;
+        this.maxKeys = maxKeys;
+        this.executor = executor == null ? getDefaultExecutor() : executor;
+    }
+
+    private static synchronized Executor getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            defaultExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ConflatingListener");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return defaultExecutor;
+    }
+
+    @Override
+    public void call(String name, JsonNode data) {
+        received.incrementAndGet();
+        String key = getKey(data);
+
+        boolean schedule;
+        synchronized (this) {
+            this.name = name;
+            if (pending.containsKey(key)) {
+                conflated.incrementAndGet();
+            } else if (pending.size() >= maxKeys) {
+                Iterator<Map.Entry<String, JsonNode>> eldest = pending.entrySet().iterator();
+                eldest.next();
+                eldest.remove();
+                dropped.incrementAndGet();
+            }
+            pending.put(key, data);
+
+            schedule = !scheduled;
+            scheduled = true;
+        }
+
+        if (schedule) {
+            try {
+                executor.execute(drain);
+            } catch (RejectedExecutionException e) {
+                // The pending messages are kept, the next message schedules them again
+                synchronized (this) {
+                    scheduled = false;
+                }
+                LOGGER.log(Level.WARNING, "Unable to deliver conflated messages of " + name, e);
+            }
+        }
+    }
+
+    private String getKey(JsonNode data) {
+        if (keyField == null || data == null) {
+            return NO_KEY;
+        }
+        JsonNode key = data.get(keyField);
+        return key == null ? NO_KEY : key.asText();
+    }
+
+    private void drain() {
+        while (true) {
+            String name;
+            JsonNode data;
+            synchronized (this) {
+                Iterator<Map.Entry<String, JsonNode>> eldest = pending.entrySet().iterator();
+                if (!eldest.hasNext()) {
+                    scheduled = false;
+                    return;
+                }
+                data = eldest.next().getValue();
+                eldest.remove();
+                name = this.name;
+            }
+
+            try {
+                listener.call(name, data);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Conflated listener of " + name + " failed", e);
+            }
+            delivered.incrementAndGet();
+        }
+    }
+
+    public long getReceivedCount() {
+        return received.get();
+    }
+
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /**
+     * @return messages replaced by a newer message with the same key before delivery
+     */
+    public long getConflatedCount() {
+        return conflated.get();
+    }
+
+    /**
+     * @return messages dropped because too many keys were pending
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+}
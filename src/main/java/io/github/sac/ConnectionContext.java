@@ -0,0 +1,133 @@
+package io.github.sac;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Handshake state shared by the sockets using it: the SSLContext, whose client session cache lets reconnects resume
+ * TLS sessions instead of performing full handshakes. Host names are resolved ahead of connecting, which warms the
+ * JVM's InetAddress cache used by the websocket connect. Its lifetime is the networkaddress.cache.ttl security
+ * property.
+ */
+public class ConnectionContext {
+
+    private final static Logger LOGGER = Logger.getLogger(ConnectionContext.class.getName());
+
+    private static ConnectionContext defaultContext;
+
+    private final SSLContext sslContext;
+    private final AtomicLong fullHandshakes = new AtomicLong();
+    private final AtomicLong resumedHandshakes = new AtomicLong();
+
+    /**
+     * @return context shared by all sockets not given one, backed by the default SSLContext
+     */
+    public static synchronized ConnectionContext getDefault() {
+        if (defaultContext == null) {
+            try {
+                defaultContext = new ConnectionContext(SSLContext.getDefault());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("No default SSLContext", e);
+            }
+        }
+        return defaultContext;
+    }
+
+    /**
+     * @param sslContext - context for secure connections, e.g. one trusting a self-signed certificate
+     */
+    public ConnectionContext(SSLContext sslContext) {
+        this.sslContext = sslContext;
+    }
+
+    public SSLContext getSSLContext() {
+        return sslContext;
+    }
+
+    /**
+     * @param size - maximum number of TLS sessions kept for resumption, 0 for no limit
+     */
+    public ConnectionContext setSessionCacheSize(int size) {
+        SSLSessionContext sessions = sslContext.getClientSessionContext();
+        if (sessions != null) {
+            sessions.setSessionCacheSize(size);
+        }
+        return this;
+    }
+
+    /**
+     * @param seconds - lifetime of a cached TLS session, 0 for no limit
+     */
+    public ConnectionContext setSessionTimeout(int seconds) {
+        SSLSessionContext sessions = sslContext.getClientSessionContext();
+        if (sessions != null) {
+            sessions.setSessionTimeout(seconds);
+        }
+        return this;
+    }
+
+    /**
+     * Resolves the host of a websocket url through the JVM's InetAddress cache, which the following connect uses
+     * @return resolution time in Nanoseconds, short if the JVM's cache holds the host
+     */
+    public long resolve(String url) throws UnknownHostException {
+        String host = getHost(url);
+        if (host == null) {
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        InetAddress.getAllByName(host);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Resolves the hosts of the urls in the background, so a following connect doesn't wait for name resolution
+     */
+    public void prefetch(final Iterable<String> urls) {
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                for (String url : urls) {
+                    try {
+                        resolve(url);
+                    } catch (UnknownHostException e) {
+                        LOGGER.log(Level.FINE, "Unable to resolve " + url, e);
+                    }
+                }
+            }
+        }, "DnsPrefetch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public long getFullHandshakes() {
+        return fullHandshakes.get();
+    }
+
+    public long getResumedHandshakes() {
+        return resumedHandshakes.get();
+    }
+
+    void recordTlsHandshake(boolean resumed) {
+        if (resumed) {
+            resumedHandshakes.incrementAndGet();
+        } else {
+            fullHandshakes.incrementAndGet();
+        }
+    }
+
+    private static String getHost(String url) {
+        try {
+            return URI.create(url).getHost();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -6,15 +6,22 @@ package io.github.sac;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
 
 public class Emitter {
 
+    private final static Logger LOGGER = Logger.getLogger(Emitter.class.getName());
+
 
     private ConcurrentHashMap<String, Listener> singlecallbacks = new ConcurrentHashMap<>();
     private ConcurrentHashMap<String, AckListener> singleackcallbacks = new ConcurrentHashMap<>();
     private ConcurrentHashMap<String, Listener> publishcallbacks = new ConcurrentHashMap<>();
+    volatile HandlerProfiler profiler;
 
     /**
      * Listens on the event.
@@ -53,7 +60,7 @@ public class Emitter {
 
         Listener listener = singlecallbacks.get(event);
         if (listener != null) {
-            listener.call(event, object);
+            call(HandlerProfiler.Kind.EVENT, event, listener, object);
         }
         return this;
     }
@@ -63,7 +70,7 @@ public class Emitter {
         Listener listener = publishcallbacks.get(event);
 
         if (listener != null) {
-            listener.call(event, object);
+            call(HandlerProfiler.Kind.CHANNEL, event, listener, object);
         }
         return this;
     }
@@ -76,11 +83,78 @@ public class Emitter {
 
         AckListener listener = singleackcallbacks.get(event);
         if (listener != null) {
-            listener.call(event, object, ack);
+            call(event, listener, object, ack);
         }
         return this;
     }
 
+    private void call(HandlerProfiler.Kind kind, final String name, final Listener listener, final JsonNode data) {
+        if (profiler == null) {
+            listener.call(name, data);
+            return;
+        }
+        profile(kind, name, new Runnable() {
+            public void run() {
+                listener.call(name, data);
+            }
+        });
+    }
+
+    private void call(final String name, final AckListener listener, final JsonNode data, final Ack ack) {
+        if (profiler == null) {
+            listener.call(name, data, ack);
+            return;
+        }
+        profile(HandlerProfiler.Kind.EVENT, name, new Runnable() {
+            public void run() {
+                listener.call(name, data, ack);
+            }
+        });
+    }
+
+    /**
+     * Calls the ack of an emit, publish or subscribe with the server's response
+     */
+    void call(final String name, final Ack ack, final JsonNode error, final JsonNode data) {
+        if (profiler == null) {
+            ack.call(name, error, data);
+            return;
+        }
+        profile(HandlerProfiler.Kind.ACK, name, new Runnable() {
+            public void run() {
+                ack.call(name, error, data);
+            }
+        });
+    }
+
+    /**
+     * Runs a handler timed by the profiler, on its offload executor if the handler exceeded the budget before
+     */
+    private void profile(HandlerProfiler.Kind kind, String name, final Runnable handlerCall) {
+        final HandlerProfiler profiler = this.profiler;
+        if (profiler == null) {
+            handlerCall.run();
+            return;
+        }
+        final HandlerStats handler = profiler.getStats(kind, name);
+        Runnable timed = new Runnable() {
+            public void run() {
+                long start = profiler.begin(handler);
+                try {
+                    handlerCall.run();
+                } finally {
+                    profiler.end(handler, start);
+                }
+            }
+        };
+        Executor executor = profiler.getOffloadExecutor(handler);
+        if (executor == null) {
+            timed.run();
+        } else {
+            executor.execute(timed);
+        }
+    }
+
 
     public interface Listener {
         void call(String name, JsonNode data);
@@ -90,6 +164,29 @@ public class Emitter {
         void call(String name, JsonNode data, Ack ack);
     }
 
+    /**
+     * Listener receiving binary payloads as byte buffers. With a binary codec such as MinBinCodec the buffer wraps
+     * the decoded bin value directly, with the JSON text transport base64 payloads are decoded.
+     * Payloads which are neither binary nor base64 text are delivered as null.
+     */
+    public abstract static class BinaryListener implements Listener {
+
+        @Override
+        public final void call(String name, JsonNode data) {
+            ByteBuffer buffer = null;
+            if (data != null && (data.isBinary() || data.isTextual())) {
+                try {
+                    buffer = ByteBuffer.wrap(data.binaryValue());
+                } catch (IOException e) {
+                    LOGGER.info("Unable to read binary payload for " + name);
+                }
+            }
+            call(name, buffer);
+        }
+
+        public abstract void call(String name, ByteBuffer data);
+    }
+
     /**
      * New methods ADDED
      */
@@ -0,0 +1,169 @@
+package io.github.sac;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Ranks the cluster endpoints of a {@link Socket} by measured latency.
+ * Endpoints failing to connect are considered unhealthy for a cool down period growing with consecutive failures,
+ * and are ranked after all healthy endpoints.
+ */
+public class EndpointSelector {
+
+    private static final long BASE_COOL_DOWN = 1000;
+    private static final long MAX_COOL_DOWN = 60000;
+    private static final long UNKNOWN_RTT = Long.MAX_VALUE / 2;
+
+    private volatile List<Endpoint> endpoints;
+
+    public static class Endpoint {
+
+        private final String url;
+        private long handshakeTime = -1;
+        private long smoothedRtt = -1;
+        private int failures;
+        private long unhealthyUntil;
+
+        Endpoint(String url) {
+            this.url = url;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * @return smoothed websocket opening handshake time in Nanoseconds, -1 if never connected
+         */
+        public synchronized long getHandshakeTime() {
+            return handshakeTime;
+        }
+
+        /**
+         * @return smoothed ping round trip time in Nanoseconds, -1 if not measured
+         */
+        public synchronized long getSmoothedRtt() {
+            return smoothedRtt;
+        }
+
+        public synchronized int getConsecutiveFailures() {
+            return failures;
+        }
+
+        public synchronized boolean isHealthy() {
+            return System.currentTimeMillis() >= unhealthyUntil;
+        }
+
+        /**
+         * @return round trip time estimate used for ranking, the opening handshake takes at least two round trips
+         */
+        public synchronized long getRttEstimate() {
+            if (smoothedRtt >= 0) {
+                return smoothedRtt;
+            }
+            return handshakeTime >= 0 ? handshakeTime / 2 : UNKNOWN_RTT;
+        }
+
+        synchronized void recordHandshake(long nanos) {
+            handshakeTime = handshakeTime < 0 ? nanos : (3 * handshakeTime + nanos) / 4;
+            failures = 0;
+            unhealthyUntil = 0;
+        }
+
+        synchronized void recordRtt(long nanos) {
+            smoothedRtt = nanos;
+        }
+
+        synchronized void recordFailure() {
+            failures++;
+            long coolDown = Math.min(MAX_COOL_DOWN, BASE_COOL_DOWN << Math.min(failures - 1, 16));
+            unhealthyUntil = System.currentTimeMillis() + coolDown;
+            // Stale measurements would rank the endpoint first again once it's healthy
+            smoothedRtt = -1;
+        }
+
+        synchronized long getUnhealthyUntil() {
+            return unhealthyUntil;
+        }
+
+        @Override
+        public String toString() {
+            return "Endpoint{url=" + url + ", rttEstimate=" + getRttEstimate() + ", healthy=" + isHealthy() + "}";
+        }
+    }
+
+    EndpointSelector(List<String> urls) {
+        setUrls(urls);
+    }
+
+    void setUrls(List<String> urls) {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("At least one endpoint url is required");
+        }
+        List<Endpoint> endpoints = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            endpoints.add(new Endpoint(url));
+        }
+        this.endpoints = Collections.unmodifiableList(endpoints);
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * @return endpoint with the url, a new unranked one if the url isn't configured
+     */
+    Endpoint getEndpoint(String url) {
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.getUrl().equals(url)) {
+                return endpoint;
+            }
+        }
+        return new Endpoint(url);
+    }
+
+    /**
+     * @return healthy endpoints by ascending round trip time estimate, followed by unhealthy endpoints
+     * by end of their cool down
+     */
+    public List<Endpoint> getRanked() {
+        List<Endpoint> healthy = new ArrayList<>();
+        List<Endpoint> unhealthy = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            (endpoint.isHealthy() ? healthy : unhealthy).add(endpoint);
+        }
+
+        Collections.sort(healthy, new Comparator<Endpoint>() {
+            public int compare(Endpoint first, Endpoint second) {
+                return compareLongs(first.getRttEstimate(), second.getRttEstimate());
+            }
+        });
+        Collections.sort(unhealthy, new Comparator<Endpoint>() {
+            public int compare(Endpoint first, Endpoint second) {
+                return compareLongs(first.getUnhealthyUntil(), second.getUnhealthyUntil());
+            }
+        });
+
+        healthy.addAll(unhealthy);
+        return healthy;
+    }
+
+    /**
+     * @return true if there's a healthy endpoint other than {@code current}
+     */
+    boolean hasHealthyAlternative(Endpoint current) {
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint != current && endpoint.isHealthy()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int compareLongs(long first, long second) {
+        return first < second ? -1 : (first == second ? 0 : 1);
+    }
+}
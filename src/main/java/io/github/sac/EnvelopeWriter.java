@@ -0,0 +1,180 @@
+package io.github.sac;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.github.sac.codec.ByteBufferOutputStream;
+import io.github.sac.codec.JsonTrees;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes SocketCluster text envelopes straight into a reused UTF-8 buffer through a cached {@link JsonGenerator},
+ * without building an intermediate tree. Field names and constant event names are written from pre-quoted
+ * {@link SerializedString} fragments.
+ */
+class EnvelopeWriter {
+
+    static final long NO_CID = -1;
+
+    private static final SerializableString EVENT = new SerializedString("event");
+    private static final SerializableString DATA = new SerializedString("data");
+    private static final SerializableString CID = new SerializedString("cid");
+    private static final SerializableString RID = new SerializedString("rid");
+    private static final SerializableString ERROR = new SerializedString("error");
+    private static final SerializableString CHANNEL = new SerializedString("channel");
+    private static final SerializableString AUTH_TOKEN = new SerializedString("authToken");
+
+    private static final SerializableString HANDSHAKE_EVENT = new SerializedString("#handshake");
+    private static final SerializableString PUBLISH_EVENT = new SerializedString("#publish");
+    private static final SerializableString SUBSCRIBE_EVENT = new SerializedString("#subscribe");
+    private static final SerializableString UNSUBSCRIBE_EVENT = new SerializedString("#unsubscribe");
+
+    private final JsonFactory factory;
+    private final ByteBufferOutputStream buffer = new ByteBufferOutputStream(4096);
+    private JsonGenerator generator;
+
+    /**
+     * @param factory - plain streaming factory, JsonNode and POJO data are written by {@link JsonTrees}
+     */
+    EnvelopeWriter(JsonFactory factory) {
+        this.factory = factory;
+    }
+
+    synchronized byte[] writeHandshake(String authToken, long cid) throws IOException {
+        try {
+            JsonGenerator gen = begin();
+            gen.writeFieldName(EVENT);
+            gen.writeString(HANDSHAKE_EVENT);
+            gen.writeFieldName(DATA);
+            gen.writeStartObject();
+            gen.writeFieldName(AUTH_TOKEN);
+            if (authToken == null) {
+                gen.writeNull();
+            } else {
+                gen.writeString(authToken);
+            }
+            gen.writeEndObject();
+            return end(gen, cid);
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    synchronized byte[] writeEmit(String event, Object data, long cid) throws IOException {
+        try {
+            JsonGenerator gen = begin();
+            gen.writeFieldName(EVENT);
+            gen.writeString(event);
+            gen.writeFieldName(DATA);
+            writeData(gen, data);
+            return end(gen, cid);
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    synchronized byte[] writePublish(String channel, Object data, long cid) throws IOException {
+        try {
+            JsonGenerator gen = begin();
+            gen.writeFieldName(EVENT);
+            gen.writeString(PUBLISH_EVENT);
+            gen.writeFieldName(DATA);
+            gen.writeStartObject();
+            gen.writeFieldName(CHANNEL);
+            gen.writeString(channel);
+            gen.writeFieldName(DATA);
+            writeData(gen, data);
+            gen.writeEndObject();
+            return end(gen, cid);
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    synchronized byte[] writeSubscribe(String channel, long cid) throws IOException {
+        try {
+            JsonGenerator gen = begin();
+            gen.writeFieldName(EVENT);
+            gen.writeString(SUBSCRIBE_EVENT);
+            gen.writeFieldName(DATA);
+            gen.writeStartObject();
+            gen.writeFieldName(CHANNEL);
+            gen.writeString(channel);
+            gen.writeEndObject();
+            return end(gen, cid);
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    synchronized byte[] writeUnsubscribe(String channel, long cid) throws IOException {
+        try {
+            JsonGenerator gen = begin();
+            gen.writeFieldName(EVENT);
+            gen.writeString(UNSUBSCRIBE_EVENT);
+            gen.writeFieldName(DATA);
+            gen.writeString(channel);
+            return end(gen, cid);
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    synchronized byte[] writeResponse(long rid, JsonNode error, JsonNode data) throws IOException {
+        try {
+            JsonGenerator gen = begin();
+            gen.writeFieldName(ERROR);
+            writeData(gen, error);
+            gen.writeFieldName(DATA);
+            writeData(gen, data);
+            gen.writeFieldName(RID);
+            gen.writeNumber(rid);
+            return end(gen, NO_CID);
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    private JsonGenerator begin() throws IOException {
+        if (generator == null) {
+            generator = factory.createGenerator(buffer);
+            generator.setRootValueSeparator(null);
+        }
+        buffer.reset();
+        generator.writeStartObject();
+        return generator;
+    }
+
+    private byte[] end(JsonGenerator gen, long cid) throws IOException {
+        if (cid != NO_CID) {
+            gen.writeFieldName(CID);
+            gen.writeNumber(cid);
+        }
+        gen.writeEndObject();
+        gen.flush();
+        return buffer.toByteArray();
+    }
+
+    private void writeData(JsonGenerator gen, Object data) throws IOException {
+        if (data instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) data).duplicate();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            gen.writeBinary(bytes);
+        } else {
+            JsonTrees.writeObject(gen, data);
+        }
+    }
+
+    /**
+     * Drops the generator, whose output context is left inconsistent by a failed write
+     */
+    private IOException failed(IOException e) {
+        generator = null;
+        return e;
+    }
+}
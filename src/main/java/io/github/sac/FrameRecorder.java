@@ -0,0 +1,134 @@
+package io.github.sac;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Appends the frames of a {@link Socket} to memory-mapped log segments, to be fed back by {@link FrameReplayer}.
+ * A segment starts with a magic number and a version, followed by records of
+ * direction (byte), opcode (byte), payload length (int), Nanoseconds since recording started (long) and payload.
+ * A zero direction marks the end of a segment.
+ */
+public class FrameRecorder implements Closeable {
+
+    private final static Logger LOGGER = Logger.getLogger(FrameRecorder.class.getName());
+
+    public static final byte INBOUND = 1;
+    public static final byte OUTBOUND = 2;
+
+    static final int MAGIC = 0x5343464c;
+    static final int VERSION = 1;
+    static final int SEGMENT_HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 14;
+    static final int MIN_SEGMENT_SIZE = 4096;
+
+    private final File directory;
+    private final int segmentSize;
+    private final long startNanos;
+    private RandomAccessFile file;
+    private MappedByteBuffer segment;
+    private int segments;
+    private long records;
+    private long bytes;
+    private boolean closed;
+
+    /**
+     * @param directory - directory for the segment files, created if missing
+     * @param segmentSize - size of a segment in bytes, at least 4096, larger frames get a segment of their own
+     */
+    public FrameRecorder(File directory, int segmentSize) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("segmentSize must be at least " + MIN_SEGMENT_SIZE + ", was "
+                    + segmentSize);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        startNanos = System.nanoTime();
+        openSegment(segmentSize);
+    }
+
+    static File segmentFile(File directory, int index) {
+        return new File(directory, String.format("frames-%06d.sclog", index));
+    }
+
+    /**
+     * Appends a frame, recording stops with a warning if the log can't be written
+     */
+    public synchronized void record(byte direction, int opcode, byte[] payload) {
+        if (closed) {
+            return;
+        }
+        long nanos = System.nanoTime() - startNanos;
+        int length = payload == null ? 0 : payload.length;
+
+        try {
+            // Keep room for the end marker
+            if (segment.remaining() < RECORD_HEADER_SIZE + length + 1) {
+                segment.put((byte) 0);
+                finishSegment();
+                openSegment(Math.max(segmentSize, SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE + length + 1));
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to open frame log segment, recording stopped", e);
+            closed = true;
+            return;
+        }
+
+        segment.put(direction).put((byte) opcode).putInt(length).putLong(nanos);
+        if (length > 0) {
+            segment.put(payload);
+        }
+        records++;
+        bytes += length;
+    }
+
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return payload bytes recorded
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int getSegments() {
+        return segments;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        finishSegment();
+    }
+
+    private void openSegment(int size) throws IOException {
+        file = new RandomAccessFile(segmentFile(directory, segments), "rw");
+        segment = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        segment.putInt(MAGIC).putInt(VERSION);
+        segments++;
+    }
+
+    private void finishSegment() throws IOException {
+        // Unwritten space reads as zeros, which is the end marker
+        segment.force();
+        file.close();
+    }
+}
@@ -0,0 +1,181 @@
+package io.github.sac;
+
+import com.neovisionaries.ws.client.WebSocketOpcode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds inbound frames recorded by {@link FrameRecorder} into the decode and dispatch path of a {@link Socket},
+ * without a server. Outbound frames are counted only. Replies a handler sends while replaying are dropped
+ * unless the socket is connected.
+ */
+public class FrameReplayer {
+
+    public enum Speed {
+        /**
+         * Frames are dispatched with their recorded spacing
+         */
+        ORIGINAL,
+        /**
+         * Recorded spacing divided by the scale factor
+         */
+        SCALED,
+        /**
+         * Frames are dispatched back to back
+         */
+        MAXIMUM
+    }
+
+    private final File directory;
+
+    public FrameReplayer(File directory) {
+        this.directory = directory;
+    }
+
+    public static class Result {
+
+        private final long frames;
+        private final long bytes;
+        private final long outboundFrames;
+        private final long recordedNanos;
+        private final long elapsedNanos;
+
+        Result(long frames, long bytes, long outboundFrames, long recordedNanos, long elapsedNanos) {
+            this.frames = frames;
+            this.bytes = bytes;
+            this.outboundFrames = outboundFrames;
+            this.recordedNanos = recordedNanos;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return inbound frames dispatched
+         */
+        public long getFrames() {
+            return frames;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return outbound frames skipped
+         */
+        public long getOutboundFrames() {
+            return outboundFrames;
+        }
+
+        /**
+         * @return time between the first and the last dispatched frame when recorded
+         */
+        public long getRecordedNanos() {
+            return recordedNanos;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getFramesPerSecond() {
+            return elapsedNanos == 0 ? 0 : frames * 1e9 / elapsedNanos;
+        }
+
+        public double getBytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{frames=" + frames + ", bytes=" + bytes + ", elapsedNanos=" + elapsedNanos
+                    + ", framesPerSecond=" + (long) getFramesPerSecond() + "}";
+        }
+    }
+
+    /**
+     * Dispatches all recorded inbound text and binary frames on the calling thread
+     * @param speed - pacing of the frames
+     * @param scale - speed up factor for {@link Speed#SCALED}, e.g. 10 for ten times the recorded rate
+     */
+    public Result replay(Socket socket, Speed speed, double scale) throws IOException {
+        double factor = speed == Speed.SCALED ? scale : 1;
+        long frames = 0;
+        long bytes = 0;
+        long outbound = 0;
+        long firstNanos = -1;
+        long lastNanos = 0;
+        long start = System.nanoTime();
+
+        for (int index = 0; ; index++) {
+            File segmentFile = FrameRecorder.segmentFile(directory, index);
+            if (!segmentFile.isFile()) {
+                break;
+            }
+
+            MappedByteBuffer segment;
+            RandomAccessFile file = new RandomAccessFile(segmentFile, "r");
+            try {
+                segment = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            } finally {
+                file.close();
+            }
+            if (segment.getInt() != FrameRecorder.MAGIC || segment.getInt() != FrameRecorder.VERSION) {
+                throw new IOException("Not a frame log segment: " + segmentFile);
+            }
+
+            while (segment.remaining() >= FrameRecorder.RECORD_HEADER_SIZE) {
+                byte direction = segment.get();
+                if (direction == 0) {
+                    break;
+                }
+                int opcode = segment.get();
+                int length = segment.getInt();
+                long nanos = segment.getLong();
+                byte[] payload = new byte[length];
+                segment.get(payload);
+
+                if (direction != FrameRecorder.INBOUND) {
+                    outbound++;
+                    continue;
+                }
+                if (opcode != WebSocketOpcode.TEXT && opcode != WebSocketOpcode.BINARY) {
+                    continue;
+                }
+
+                if (firstNanos < 0) {
+                    firstNanos = nanos;
+                    start = System.nanoTime();
+                }
+                if (speed != Speed.MAXIMUM) {
+                    awaitUntil(start + (long) ((nanos - firstNanos) / factor));
+                }
+
+                socket.dispatch(null, payload);
+                frames++;
+                bytes += length;
+                lastNanos = nanos;
+            }
+        }
+
+        return new Result(frames, bytes, outbound, firstNanos < 0 ? 0 : lastNanos - firstNanos,
+                System.nanoTime() - start);
+    }
+
+    private static void awaitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            // Parking overshoots by tens of microseconds, so the last stretch is spun
+            if (remaining > TimeUnit.MILLISECONDS.toNanos(1)) {
+                LockSupport.parkNanos(remaining - TimeUnit.MILLISECONDS.toNanos(1));
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package io.github.sac;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Times event, channel and ack handlers of a {@link Socket}, per event or channel name, and reports handlers
+ * exceeding a time budget. Timing costs two clock reads and a histogram update per call, so it can be left on.
+ * <p>
+ * With a {@link SlowHandlerListener} set, a watchdog thread also reports handlers still running past the budget,
+ * e.g. blocked ones. With an offload executor set, handlers which exceeded the budget are run on the executor
+ * from then on instead of the dispatching thread. Offloaded calls are no longer ordered with other handlers;
+ * a single thread executor keeps the order among them.
+ */
+public class HandlerProfiler {
+
+    private final static Logger LOGGER = Logger.getLogger(HandlerProfiler.class.getName());
+
+    public enum Kind {
+        /**
+         * {@link Emitter.Listener} and {@link Emitter.AckListener} of an event emitted by the server
+         */
+        EVENT,
+        /**
+         * Listener of a channel publication
+         */
+        CHANNEL,
+        /**
+         * {@link Ack} of an emit, publish or subscribe, named after the event or channel
+         */
+        ACK
+    }
+
+    private static class Running {
+        final Thread thread;
+        // Innermost handler running on the thread, handlers dispatched inline by a handler are nested in it
+        volatile Call top;
+
+        Running(Thread thread) {
+            this.thread = thread;
+        }
+    }
+
+    private static class Call {
+        final HandlerStats handler;
+        final long start;
+        final Call outer;
+        volatile boolean reported;
+
+        Call(HandlerStats handler, long start, Call outer) {
+            this.handler = handler;
+            this.start = start;
+            this.outer = outer;
+        }
+    }
+
+    private final Map<Kind, ConcurrentHashMap<String, HandlerStats>> handlers = new EnumMap<>(Kind.class);
+    private final CopyOnWriteArrayList<Running> running = new CopyOnWriteArrayList<>();
+    // Set on threads which ran a handler while the watchdog was on
+    private final ThreadLocal<Running> current = new ThreadLocal<>();
+    private final long budget;
+    private volatile SlowHandlerListener listener;
+    private volatile Executor offloadExecutor;
+    private volatile boolean watching;
+    private Thread watchdog;
+
+    /**
+     * @param budget - time a handler may take, in Nanoseconds, 0 to only time handlers
+     */
+    public HandlerProfiler(long budget) {
+        this.budget = budget;
+        for (Kind kind : Kind.values()) {
+            handlers.put(kind, new ConcurrentHashMap<String, HandlerStats>());
+        }
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Starts the watchdog thread, if a budget is set
+     */
+    public synchronized HandlerProfiler setSlowHandlerListener(SlowHandlerListener listener) {
+        this.listener = listener;
+        if (listener != null && budget > 0 && watchdog == null) {
+            watching = true;
+            watchdog = new Thread(new Runnable() {
+                public void run() {
+                    watch();
+                }
+            }, "HandlerWatchdog");
+            watchdog.setDaemon(true);
+            watchdog.start();
+        }
+        return this;
+    }
+
+    /**
+     * @param executor - runs handlers which exceeded the budget, null to keep them on the dispatching thread
+     */
+    public HandlerProfiler setOffloadExecutor(Executor executor) {
+        this.offloadExecutor = executor;
+        return this;
+    }
+
+    /**
+     * @return handlers called so far
+     */
+    public Collection<HandlerStats> getHandlers(Kind kind) {
+        return Collections.unmodifiableCollection(handlers.get(kind).values());
+    }
+
+    /**
+     * @return null if no handler of the event or channel was called yet
+     */
+    public HandlerStats getHandler(Kind kind, String name) {
+        return handlers.get(kind).get(name);
+    }
+
+    /**
+     * Stops the watchdog thread
+     */
+    public synchronized void close() {
+        watching = false;
+        if (watchdog != null) {
+            watchdog.interrupt();
+            watchdog = null;
+        }
+    }
+
+    HandlerStats getStats(Kind kind, String name) {
+        ConcurrentHashMap<String, HandlerStats> byName = handlers.get(kind);
+        HandlerStats stats = byName.get(name);
+        if (stats == null) {
+            HandlerStats created = new HandlerStats(kind, name);
+            stats = byName.putIfAbsent(name, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * @return executor to run the handler on, null to run it on the calling thread
+     */
+    Executor getOffloadExecutor(HandlerStats handler) {
+        return handler.isOffloaded() ? offloadExecutor : null;
+    }
+
+    /**
+     * @return start time, to be passed to {@link #end(HandlerStats, long)} when the handler returns
+     */
+    long begin(HandlerStats handler) {
+        long start = System.nanoTime();
+        if (watching) {
+            Running state = current.get();
+            if (state == null) {
+                state = new Running(Thread.currentThread());
+                current.set(state);
+                running.add(state);
+            }
+            state.top = new Call(handler, start, state.top);
+        }
+        return start;
+    }
+
+    void end(HandlerStats handler, long start) {
+        long nanos = System.nanoTime() - start;
+        // Popped even if the watchdog stopped meanwhile, but only by the call which pushed it
+        Running state = current.get();
+        if (state != null) {
+            Call call = state.top;
+            if (call != null && call.handler == handler && call.start == start) {
+                state.top = call.outer;
+            }
+        }
+        handler.getTimes().record(nanos);
+
+        if (budget > 0 && nanos > budget) {
+            handler.onOverrun(offloadExecutor != null);
+            SlowHandlerListener listener = this.listener;
+            if (listener != null) {
+                try {
+                    listener.onSlowHandler(handler, nanos);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Slow handler listener failed", e);
+                }
+            }
+        }
+    }
+
+    private void watch() {
+        long interval = Math.max(1, TimeUnit.NANOSECONDS.toMillis(budget) / 2);
+        while (watching) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long now = System.nanoTime();
+            for (Running state : running) {
+                if (!state.thread.isAlive()) {
+                    running.remove(state);
+                    continue;
+                }
+                for (Call call = state.top; call != null; call = call.outer) {
+                    long elapsed = now - call.start;
+                    if (call.reported || elapsed <= budget) {
+                        continue;
+                    }
+                    call.reported = true;
+                    SlowHandlerListener listener = this.listener;
+                    if (listener != null) {
+                        try {
+                            listener.onHandlerStalled(call.handler, elapsed, state.thread);
+                        } catch (RuntimeException e) {
+                            LOGGER.log(Level.WARNING, "Slow handler listener failed", e);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
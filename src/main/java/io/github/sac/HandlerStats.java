@@ -0,0 +1,65 @@
+package io.github.sac;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Run times of the handlers of one event, channel or acknowledged event, see {@link HandlerProfiler}
+ */
+public class HandlerStats {
+
+    private final HandlerProfiler.Kind kind;
+    private final String name;
+    private final LatencyHistogram times = new LatencyHistogram();
+    private final AtomicLong overruns = new AtomicLong();
+    private volatile boolean offloaded;
+
+    HandlerStats(HandlerProfiler.Kind kind, String name) {
+        this.kind = kind;
+        this.name = name;
+    }
+
+    public HandlerProfiler.Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return event or channel name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return handler run times, in Nanoseconds
+     */
+    public LatencyHistogram getTimes() {
+        return times;
+    }
+
+    /**
+     * @return calls which exceeded the budget
+     */
+    public long getOverruns() {
+        return overruns.get();
+    }
+
+    /**
+     * @return true if calls are run on the offload executor since the handler exceeded the budget
+     */
+    public boolean isOffloaded() {
+        return offloaded;
+    }
+
+    void onOverrun(boolean offload) {
+        overruns.incrementAndGet();
+        if (offload) {
+            offloaded = true;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HandlerStats{" + kind + " '" + name + "', overruns=" + overruns + ", offloaded=" + offloaded
+                + ", times=[" + times + "]}";
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.sac;
+
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+
+/**
+ * Phase timings of one connection of a {@link Socket}, all in Nanoseconds.
+ * A phase not reached yet is reported as -1
+ */
+public class HandshakeTimings {
+
+    private final String url;
+    private final long dnsTime;
+    private final long startTime;
+    private final long startMillis;
+    private volatile long transportTime = -1;
+    private volatile long upgradeTime = -1;
+    private volatile long socketClusterTime = -1;
+    private volatile boolean secure;
+    private volatile boolean sessionResumed;
+
+    HandshakeTimings(String url, long dnsTime) {
+        this.url = url;
+        this.dnsTime = dnsTime;
+        startTime = System.nanoTime();
+        startMillis = System.currentTimeMillis();
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return host name resolution time, short if the JVM's address cache held the host, -1 if not resolved ahead
+     * of the connect, e.g. through a proxy
+     */
+    public long getDnsTime() {
+        return dnsTime;
+    }
+
+    /**
+     * @return TCP connect and TLS handshake time
+     */
+    public long getTransportTime() {
+        return transportTime;
+    }
+
+    /**
+     * @return websocket opening handshake time
+     */
+    public long getUpgradeTime() {
+        return upgradeTime;
+    }
+
+    /**
+     * @return time from the opening handshake until the socketcluster handshake was acknowledged
+     */
+    public long getSocketClusterTime() {
+        return socketClusterTime;
+    }
+
+    /**
+     * @return time from name resolution until the socketcluster handshake was acknowledged
+     */
+    public long getTotalTime() {
+        long socketCluster = socketClusterTime;
+        return socketCluster < 0 ? -1 : Math.max(0, dnsTime) + transportTime + upgradeTime + socketCluster;
+    }
+
+    public boolean isSecure() {
+        return secure;
+    }
+
+    /**
+     * @return true if an earlier TLS session was resumed instead of performing a full handshake
+     */
+    public boolean isSessionResumed() {
+        return sessionResumed;
+    }
+
+    void onTransportReady(java.net.Socket socket) {
+        transportTime = System.nanoTime() - startTime;
+        if (socket instanceof SSLSocket) {
+            secure = true;
+            SSLSession session = ((SSLSocket) socket).getSession();
+            // A resumed session keeps the creation time of the full handshake that established it
+            sessionResumed = session.getCreationTime() < startMillis;
+        }
+    }
+
+    void onUpgraded() {
+        upgradeTime = System.nanoTime() - startTime - transportTime;
+    }
+
+    void onSocketClusterHandshake() {
+        if (socketClusterTime < 0 && upgradeTime >= 0) {
+            socketClusterTime = System.nanoTime() - startTime - transportTime - upgradeTime;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HandshakeTimings{" +
+                "url='" + url + '\'' +
+                ", dnsTime=" + dnsTime +
+                ", transportTime=" + transportTime +
+                ", upgradeTime=" + upgradeTime +
+                ", socketClusterTime=" + socketClusterTime +
+                ", secure=" + secure +
+                ", sessionResumed=" + sessionResumed +
+                '}';
+    }
+}
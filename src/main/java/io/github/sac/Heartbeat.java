@@ -0,0 +1,129 @@
+package io.github.sac;
+
+import com.neovisionaries.ws.client.PayloadGenerator;
+import com.neovisionaries.ws.client.WebSocket;
+import com.neovisionaries.ws.client.WebSocketCloseCode;
+import com.neovisionaries.ws.client.WebSocketFrame;
+
+import java.nio.ByteBuffer;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Logger;
+
+/**
+ * Client side liveness monitor of a socket connection.
+ * The connection is dropped when no frame arrives within the ping timeout, and websocket ping frames carrying
+ * their send time are used to keep a smoothed round trip time estimate (RFC 6298 style).
+ */
+class Heartbeat {
+
+    private final static Logger LOGGER = Logger.getLogger(Heartbeat.class.getName());
+
+    /**
+     * Time given to the closing handshake of a timed out connection before the socket is closed
+     */
+    private static final long CLOSE_DELAY = 1000;
+
+    private Timer timer;
+    private TimerTask timeoutTask;
+    private WebSocket webSocket;
+
+    private volatile long lastActivity;
+    private volatile long smoothedRtt = -1;
+    private volatile long rttVariance = -1;
+
+    /**
+     * Starts monitoring a connection, replacing the previous one.
+     *
+     * @param pingTimeout  milliseconds without incoming frames before the connection is dropped, 0 to disable
+     * @param pingInterval milliseconds between websocket ping probes, 0 to disable
+     */
+    synchronized void start(final WebSocket webSocket, long pingTimeout, long pingInterval) {
+        stop();
+        if (webSocket != this.webSocket) {
+            // Round trip times are per connection
+            smoothedRtt = -1;
+            rttVariance = -1;
+        }
+        this.webSocket = webSocket;
+        lastActivity = System.nanoTime();
+
+        if (pingInterval > 0) {
+            webSocket.setPingPayloadGenerator(new PayloadGenerator() {
+                public byte[] generate() {
+                    return ByteBuffer.allocate(8).putLong(System.nanoTime()).array();
+                }
+            });
+            webSocket.setPingInterval(pingInterval);
+        }
+
+        if (pingTimeout > 0) {
+            final long timeoutNanos = pingTimeout * 1000000L;
+            timeoutTask = new TimerTask() {
+                @Override
+                public void run() {
+                    if (System.nanoTime() - lastActivity > timeoutNanos) {
+                        LOGGER.info("No message received within ping timeout, dropping connection");
+                        cancel();
+                        webSocket.disconnect(WebSocketCloseCode.AWAY, "Ping timeout", CLOSE_DELAY);
+                    }
+                }
+            };
+            if (timer == null) {
+                timer = new Timer("Heartbeat", true);
+            }
+            long period = Math.max(1, pingTimeout / 4);
+            timer.schedule(timeoutTask, period, period);
+        }
+    }
+
+    synchronized void stop() {
+        if (timeoutTask != null) {
+            timeoutTask.cancel();
+            timeoutTask = null;
+            timer.purge();
+        }
+        if (webSocket != null) {
+            webSocket.setPingInterval(0);
+            webSocket = null;
+        }
+    }
+
+    /**
+     * Called for every incoming frame
+     */
+    void onFrame(WebSocketFrame frame) {
+        lastActivity = System.nanoTime();
+
+        if (frame.isPongFrame() && frame.getPayloadLength() == 8) {
+            long rtt = System.nanoTime() - ByteBuffer.wrap(frame.getPayload()).getLong();
+            if (rtt >= 0) {
+                addRttSample(rtt);
+            }
+        }
+    }
+
+    private synchronized void addRttSample(long rtt) {
+        if (smoothedRtt < 0) {
+            smoothedRtt = rtt;
+            rttVariance = rtt / 2;
+        } else {
+            rttVariance = (3 * rttVariance + Math.abs(smoothedRtt - rtt)) / 4;
+            smoothedRtt = (7 * smoothedRtt + rtt) / 8;
+        }
+    }
+
+    /**
+     * @return smoothed round trip time in nanoseconds, -1 until the first pong is received
+     */
+    long getSmoothedRtt() {
+        return smoothedRtt;
+    }
+
+    /**
+     * @return round trip time variance in nanoseconds, -1 until the first pong is received
+     */
+    long getRttVariance() {
+        return rttVariance;
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.sac;
+
+import java.util.ArrayDeque;
+
+/**
+ * Limits the number of requests awaiting a response, requests beyond the limit are queued or rejected.
+ * A queued request takes over the slot of the request completing before it, and must release it even if it's
+ * not sent after all.
+ */
+class InFlightWindow {
+
+    private final ArrayDeque<Runnable> queued = new ArrayDeque<>();
+    private int maxInFlight = Integer.MAX_VALUE;
+    private boolean rejectWhenFull;
+    private int inFlight;
+    // Releases not yet handled by the draining thread
+    private int releases;
+    private boolean draining;
+
+    synchronized void configure(int maxInFlight, boolean rejectWhenFull) {
+        this.maxInFlight = maxInFlight;
+        this.rejectWhenFull = rejectWhenFull;
+    }
+
+    /**
+     * Runs {@code request} if a slot is free, otherwise queues it
+     *
+     * @return false if the window is full and rejects requests
+     */
+    boolean submit(Runnable request) {
+        synchronized (this) {
+            if (inFlight >= maxInFlight) {
+                if (rejectWhenFull) {
+                    return false;
+                }
+                queued.add(request);
+                return true;
+            }
+            inFlight++;
+        }
+        request.run();
+        return true;
+    }
+
+    /**
+     * Frees a slot or passes it on to the next queued request. Releases by requests run here, e.g. ones already
+     * cancelled, are drained by the same loop instead of recursing.
+     */
+    void release() {
+        synchronized (this) {
+            releases++;
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        while (true) {
+            Runnable next;
+            synchronized (this) {
+                if (releases == 0) {
+                    draining = false;
+                    return;
+                }
+                releases--;
+                next = queued.poll();
+                if (next == null) {
+                    inFlight--;
+                    continue;
+                }
+            }
+            try {
+                next.run();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    draining = false;
+                }
+                throw e;
+            }
+        }
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    synchronized int getQueued() {
+        return queued.size();
+    }
+}
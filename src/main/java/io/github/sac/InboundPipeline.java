@@ -0,0 +1,179 @@
+package io.github.sac;
+
+import com.neovisionaries.ws.client.WebSocket;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hands received messages from the websocket's reading thread to a decode thread through a preallocated ring,
+ * so slow decoding or handlers don't stop the socket from being read. Slots hold references to the received
+ * payloads, nothing is copied or allocated per message.
+ * <p>
+ * The ring is single producer, single consumer. Offers are serialized anyway, as both connections of a migration
+ * have their own reading thread. The one consumer dispatches in arrival order. When the ring is full the reading
+ * thread waits, leaving it to TCP flow control to slow down the server.
+ */
+abstract class InboundPipeline {
+
+    private final static Logger LOGGER = Logger.getLogger(InboundPipeline.class.getName());
+
+    private static final long FULL_WAIT_NANOS = 50000;
+
+    private final int mask;
+    private final WebSocket[] webSockets;
+    private final byte[][] messages;
+    private final long[] offeredAt;
+    private final PipelineStats stats;
+
+    // Next slot to write, written by the producer only
+    private final AtomicLong tail = new AtomicLong();
+    // Next slot to read, written by the consumer only
+    private final AtomicLong head = new AtomicLong();
+
+    private volatile Thread consumer;
+    private volatile boolean consumerWaiting;
+    private volatile boolean stopped;
+    private volatile boolean finished;
+
+    /**
+     * @param capacity - slots in the ring, rounded up to a power of two
+     */
+    InboundPipeline(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Pipeline capacity must be positive");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        webSockets = new WebSocket[size];
+        messages = new byte[size][];
+        offeredAt = new long[size];
+        stats = new PipelineStats(size);
+    }
+
+    /**
+     * Decodes and dispatches the message, called from the decode thread only
+     */
+    abstract void dispatch(WebSocket webSocket, byte[] message) throws Exception;
+
+    /**
+     * @param predecessor - stopped pipeline whose messages have to be dispatched first, or null
+     */
+    void start(final InboundPipeline predecessor) {
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                if (predecessor != null) {
+                    predecessor.awaitFinished();
+                }
+                consume();
+            }
+        }, "InboundPipeline");
+        thread.setDaemon(true);
+        consumer = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the decode thread once the messages in the ring are dispatched. Doesn't wait for the offer lock, so it
+     * may be called while the reading thread waits for a full ring, e.g. by a handler on the decode thread
+     */
+    void stop() {
+        stopped = true;
+        LockSupport.unpark(consumer);
+    }
+
+    /**
+     * @return false if the pipeline is stopped and the caller has to dispatch the message itself
+     */
+    synchronized boolean offer(WebSocket webSocket, byte[] message) {
+        if (stopped) {
+            return false;
+        }
+        long position = tail.get();
+        if (position - head.get() > mask) {
+            stats.onFullWait();
+            while (position - head.get() > mask) {
+                if (stopped) {
+                    return false;
+                }
+                LockSupport.parkNanos(FULL_WAIT_NANOS);
+            }
+        }
+
+        int slot = (int) position & mask;
+        webSockets[slot] = webSocket;
+        messages[slot] = message;
+        offeredAt[slot] = System.nanoTime();
+        // Volatile write publishes the slot, and orders it before reading consumerWaiting
+        tail.set(position + 1);
+        stats.onOffered((int) (position + 1 - head.get()));
+
+        if (consumerWaiting) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * Waits until the stopped pipeline has dispatched its last message
+     */
+    void awaitFinished() {
+        while (!finished) {
+            LockSupport.parkNanos(FULL_WAIT_NANOS);
+        }
+    }
+
+    /**
+     * Taking the offer lock, an offer which saw the pipeline running before it stopped has published its slot
+     * @return false if a message was offered after all
+     */
+    private synchronized boolean finish(long position) {
+        if (position != tail.get()) {
+            return false;
+        }
+        finished = true;
+        return true;
+    }
+
+    PipelineStats getStats() {
+        return stats;
+    }
+
+    private void consume() {
+        while (true) {
+            long position = head.get();
+            if (position == tail.get()) {
+                if (stopped && finish(position)) {
+                    return;
+                }
+                consumerWaiting = true;
+                if (position == tail.get() && !stopped) {
+                    LockSupport.park(this);
+                }
+                consumerWaiting = false;
+                continue;
+            }
+
+            int slot = (int) position & mask;
+            WebSocket webSocket = webSockets[slot];
+            byte[] message = messages[slot];
+            long waitNanos = System.nanoTime() - offeredAt[slot];
+            webSockets[slot] = null;
+            messages[slot] = null;
+            // The producer only needs to see the slot freed eventually
+            head.lazySet(position + 1);
+
+            stats.onDispatched(waitNanos);
+            try {
+                dispatch(webSocket, message);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Unable to dispatch message", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package io.github.sac;
+
+import com.neovisionaries.ws.client.WebSocket;
+
+import java.util.ArrayDeque;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds outbound messages in per-lane queues and hands them to the websocket one at a time from a pump thread.
+ * The websocket's own frame queue is kept short, so a message never waits behind more than a few bulk frames.
+ * The control lane has strict priority; ack and bulk lanes share the rest by weighted round robin, so bulk
+ * traffic isn't starved.
+ */
+abstract class LaneScheduler {
+
+    private final static Logger LOGGER = Logger.getLogger(LaneScheduler.class.getName());
+
+    private static class Item {
+        final SendLane lane;
+        final WebSocket webSocket;
+        final int opcode;
+        final byte[] payload;
+        final long enqueuedAt = System.nanoTime();
+
+        Item(SendLane lane, WebSocket webSocket, int opcode, byte[] payload) {
+            this.lane = lane;
+            this.webSocket = webSocket;
+            this.opcode = opcode;
+            this.payload = payload;
+        }
+    }
+
+    private final ArrayDeque<Item> control = new ArrayDeque<>();
+    private final ArrayDeque<Item> ack = new ArrayDeque<>();
+    private final ArrayDeque<Item> bulk = new ArrayDeque<>();
+    private final LaneStats[] stats = new LaneStats[SendLane.values().length];
+    private final int ackWeight;
+    private final int bulkWeight;
+    private boolean ackTurn = true;
+    private int credit;
+    private boolean stopped;
+    private boolean finished;
+
+    LaneScheduler(int ackWeight, int bulkWeight) {
+        if (ackWeight < 1 || bulkWeight < 1) {
+            throw new IllegalArgumentException("Lane weights must be positive");
+        }
+        this.ackWeight = ackWeight;
+        this.bulkWeight = bulkWeight;
+        credit = ackWeight;
+        for (SendLane lane : SendLane.values()) {
+            stats[lane.ordinal()] = new LaneStats();
+        }
+    }
+
+    /**
+     * Sends the message, called from the pump thread only
+     */
+    abstract void write(WebSocket webSocket, int opcode, byte[] payload);
+
+    /**
+     * @param predecessor - scheduler replaced by this one, its queued messages are sent first, may be null
+     */
+    void start(final LaneScheduler predecessor) {
+        Thread pump = new Thread(new Runnable() {
+            public void run() {
+                if (predecessor != null && !predecessor.awaitFinished()) {
+                    return;
+                }
+                pump();
+            }
+        }, "SendLanes");
+        pump.setDaemon(true);
+        pump.start();
+    }
+
+    /**
+     * Stops the pump once the queued messages are sent
+     */
+    synchronized void stop() {
+        stopped = true;
+        notifyAll();
+    }
+
+    /**
+     * Waits until the pump stopped after sending the queued messages
+     * @return false if interrupted
+     */
+    synchronized boolean awaitFinished() {
+        while (!finished) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return false if the pump already stopped, the message has to be sent otherwise
+     */
+    synchronized boolean enqueue(SendLane lane, WebSocket webSocket, int opcode, byte[] payload) {
+        if (finished) {
+            return false;
+        }
+        queue(lane).add(new Item(lane, webSocket, opcode, payload));
+        stats[lane.ordinal()].onEnqueued();
+        notifyAll();
+        return true;
+    }
+
+    LaneStats getStats(SendLane lane) {
+        return stats[lane.ordinal()];
+    }
+
+    private ArrayDeque<Item> queue(SendLane lane) {
+        switch (lane) {
+            case CONTROL:
+                return control;
+            case ACK:
+                return ack;
+            default:
+                return bulk;
+        }
+    }
+
+    private void pump() {
+        while (true) {
+            Item item;
+            synchronized (this) {
+                while ((item = next()) == null) {
+                    if (stopped) {
+                        finished = true;
+                        notifyAll();
+                        return;
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        finished = true;
+                        notifyAll();
+                        return;
+                    }
+                }
+            }
+
+            stats[item.lane.ordinal()].onDequeued(System.nanoTime() - item.enqueuedAt, item.payload.length);
+            try {
+                // Blocks while the websocket's frame queue is full
+                write(item.webSocket, item.opcode, item.payload);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Unable to send message", e);
+            }
+        }
+    }
+
+    private Item next() {
+        if (!control.isEmpty()) {
+            return control.poll();
+        }
+        if (ack.isEmpty()) {
+            return bulk.poll();
+        }
+        if (bulk.isEmpty()) {
+            return ack.poll();
+        }
+
+        // Both have messages waiting: take turns by weight
+        if (credit == 0) {
+            ackTurn = !ackTurn;
+            credit = ackTurn ? ackWeight : bulkWeight;
+        }
+        credit--;
+        return ackTurn ? ack.poll() : bulk.poll();
+    }
+}
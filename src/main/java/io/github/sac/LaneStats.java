@@ -0,0 +1,74 @@
+package io.github.sac;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue counters of a {@link SendLane}
+ */
+public class LaneStats {
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicInteger highWater = new AtomicInteger();
+    private final LatencyHistogram queueTime = new LatencyHistogram();
+
+    public long getEnqueued() {
+        return enqueued.get();
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    /**
+     * @return payload bytes sent
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * @return messages currently queued
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    public int getHighWater() {
+        return highWater.get();
+    }
+
+    /**
+     * @return time messages spent queued in the lane, in Nanoseconds
+     */
+    public LatencyHistogram getQueueTime() {
+        return queueTime;
+    }
+
+    void onEnqueued() {
+        enqueued.incrementAndGet();
+        int current = depth.incrementAndGet();
+        int high;
+        while (current > (high = highWater.get())) {
+            if (highWater.compareAndSet(high, current)) {
+                break;
+            }
+        }
+    }
+
+    void onDequeued(long waitNanos, int length) {
+        depth.decrementAndGet();
+        sent.incrementAndGet();
+        bytes.addAndGet(length);
+        queueTime.record(waitNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "LaneStats{sent=" + sent + ", depth=" + depth + ", highWater=" + highWater + ", queueTime=["
+                + queueTime + "]}";
+    }
+}
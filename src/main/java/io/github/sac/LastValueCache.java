@@ -0,0 +1,96 @@
+package io.github.sac;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Last received message per channel, evicting the least recently used channels beyond the configured
+ * number of entries or bytes. Message sizes are taken from the size of the received frames.
+ */
+public class LastValueCache {
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private static class Entry {
+        final JsonNode value;
+        final int size;
+
+        Entry(JsonNode value, int size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    public LastValueCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized void put(String channel, JsonNode value, int size) {
+        Entry previous = entries.put(channel, new Entry(value, size));
+        if (previous != null) {
+            bytes -= previous.size;
+        }
+        bytes += size;
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+            Entry entry = eldest.next();
+            eldest.remove();
+            bytes -= entry.size;
+            evictions++;
+        }
+    }
+
+    public synchronized JsonNode get(String channel) {
+        Entry entry = entries.get(channel);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    synchronized void remove(String channel) {
+        Entry entry = entries.remove(channel);
+        if (entry != null) {
+            bytes -= entry.size;
+        }
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LastValueCache{entries=" + entries.size() + ", bytes=" + bytes + ", hits=" + hits
+                + ", misses=" + misses + ", evictions=" + evictions + "}";
+    }
+}
@@ -0,0 +1,174 @@
+package io.github.sac;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets in the style of HdrHistogram: values below 128 are exact,
+ * larger values are kept with 64 buckets per power of two, i.e. within 1.6% of the recorded value.
+ * Recording is wait-free and safe from any thread; reads are not atomic snapshots while recording continues.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_HALF = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKET_HALF;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF + LINEAR_LIMIT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    static int bucketOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+    }
+
+    /**
+     * @return highest value counted in the bucket
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKET_HALF - 1;
+        long sub = bucket - shift * SUB_BUCKET_HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * @param value - latency, negative values are counted as 0
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucketOf(value));
+        totalCount.incrementAndGet();
+        sum.addAndGet(value);
+
+        long currentMax;
+        while (value > (currentMax = max.get())) {
+            if (max.compareAndSet(currentMax, value)) {
+                break;
+            }
+        }
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) sum.get() / count;
+    }
+
+    /**
+     * @param percentile - 0 to 100
+     * @return value at or below which the percentile of recorded values falls, 0 if empty
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long threshold = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= threshold) {
+                return Math.min(highestValueOf(bucket), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Adds the counts of another histogram
+     */
+    public void add(LatencyHistogram other) {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            long count = other.counts.get(bucket);
+            if (count != 0) {
+                counts.addAndGet(bucket, count);
+            }
+        }
+        totalCount.addAndGet(other.totalCount.get());
+        sum.addAndGet(other.sum.get());
+
+        long otherMax = other.max.get();
+        long currentMax;
+        while (otherMax > (currentMax = max.get())) {
+            if (max.compareAndSet(currentMax, otherMax)) {
+                break;
+            }
+        }
+    }
+
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts.set(bucket, 0);
+        }
+        totalCount.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Prints the percentile distribution in HdrHistogram's text format, which its plotting tools read.
+     * Percentiles are reported 5 times per halving of the distance to 100%
+     * @param unitRatio - divisor of the printed values, e.g. 1000000.0 to print Nanoseconds as Milliseconds
+     */
+    public void outputPercentileDistribution(PrintStream out, double unitRatio) {
+        out.println(String.format(Locale.US, "%12s %14s %10s %14s", "Value", "Percentile", "TotalCount",
+                "1/(1-Percentile)"));
+        out.println();
+
+        long count = totalCount.get();
+        double percentile = 0;
+        while (count > 0) {
+            long value = getValueAtPercentile(percentile);
+            long atOrBelow = countAtOrBelow(value);
+            if (atOrBelow >= count) {
+                break;
+            }
+            out.println(String.format(Locale.US, "%12.3f %2.12f %10d %14.2f", value / unitRatio, percentile / 100,
+                    atOrBelow, 1 / (1 - percentile / 100)));
+
+            int halvings = (int) (Math.log(100 / (100 - percentile)) / Math.log(2)) + 1;
+            percentile += 100 / (5 * Math.pow(2, halvings));
+        }
+        out.println(String.format(Locale.US, "%12.3f %2.12f %10d", max.get() / unitRatio, 1.0, count));
+
+        out.println(String.format(Locale.US, "#[Mean    = %12.3f, Max     = %12.3f]", getMean() / unitRatio,
+                max.get() / unitRatio));
+        out.println(String.format(Locale.US, "#[Total count    = %12d]", count));
+    }
+
+    private long countAtOrBelow(long value) {
+        int last = bucketOf(value);
+        long seen = 0;
+        for (int bucket = 0; bucket <= last; bucket++) {
+            seen += counts.get(bucket);
+        }
+        return seen;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "count=%d p50=%d p90=%d p99=%d p99.9=%d max=%d", getCount(),
+                getValueAtPercentile(50), getValueAtPercentile(90), getValueAtPercentile(99),
+                getValueAtPercentile(99.9), getMax());
+    }
+}
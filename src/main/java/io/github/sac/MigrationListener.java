@@ -0,0 +1,17 @@
+package io.github.sac;
+
+/**
+ * Outcome of {@link Socket#migrate(String)}
+ */
+public interface MigrationListener {
+
+    /**
+     * Sends and dispatch moved to the new connection, the previous one is closing
+     */
+    void onMigrated(Socket socket, String url);
+
+    /**
+     * The new connection was given up, the socket keeps using its current connection
+     */
+    void onMigrationFailed(Socket socket, String url, Exception cause);
+}
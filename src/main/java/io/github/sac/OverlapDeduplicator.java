@@ -0,0 +1,94 @@
+package io.github.sac;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Suppresses publications delivered by both connections while a migration overlaps them.
+ * Copies are counted from the moment the migration begins, so publications the previous connection delivered
+ * ahead of the new one are recognized when the new connection delivers them too. A publication is delivered when
+ * its connection has seen it more often than copies of it were delivered, so identical publications are still
+ * delivered once per copy. Until the new connection's subscription to a channel is confirmed, the previous
+ * connection delivers the channel alone.
+ */
+class OverlapDeduplicator {
+
+    private final int maxEntries;
+    private final Map<Key, int[]> counts = new HashMap<>();
+    private final Set<String> started = new HashSet<>();
+    private long suppressed;
+
+    private static class Key {
+        final String channel;
+        final JsonNode data;
+        final int hash;
+
+        Key(String channel, JsonNode data) {
+            this.channel = channel;
+            this.data = data;
+            hash = 31 * channel.hashCode() + (data == null ? 0 : data.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return channel.equals(key.channel) && (data == null ? key.data == null : data.equals(key.data));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * @param maxEntries - distinct publications tracked, later ones are delivered unchecked
+     */
+    OverlapDeduplicator(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Lets the new connection deliver a channel, once it is subscribed to it
+     */
+    synchronized void start(String channel) {
+        started.add(channel);
+    }
+
+    /**
+     * @param source - 0 for the previous connection, 1 for the new one
+     * @return false if the other connection already delivered this copy
+     */
+    synchronized boolean accept(int source, String channel, JsonNode data) {
+        Key key = new Key(channel, data);
+        // Copies seen by the previous and the new connection, and copies delivered
+        int[] seen = counts.get(key);
+        if (seen == null) {
+            if (counts.size() >= maxEntries) {
+                return source == 0 || started.contains(channel);
+            }
+            seen = new int[3];
+            counts.put(key, seen);
+        }
+
+        seen[source]++;
+        // Ahead of the subscription's confirmation the previous connection delivers it, once it arrives there
+        if ((source == 0 || started.contains(channel)) && seen[source] > seen[2]) {
+            seen[2]++;
+            return true;
+        }
+        suppressed++;
+        return false;
+    }
+
+    synchronized long getSuppressed() {
+        return suppressed;
+    }
+}
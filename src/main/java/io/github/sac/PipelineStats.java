@@ -0,0 +1,86 @@
+package io.github.sac;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ring counters of an inbound pipeline, see {@link Socket#enableInboundPipeline(int)}
+ */
+public class PipelineStats {
+
+    private final int capacity;
+    private final AtomicLong offered = new AtomicLong();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong fullWaits = new AtomicLong();
+    private final AtomicInteger highWater = new AtomicInteger();
+    private final LatencyHistogram queueTime = new LatencyHistogram();
+
+    PipelineStats(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return number of slots in the ring
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getOffered() {
+        return offered.get();
+    }
+
+    public long getDispatched() {
+        return dispatched.get();
+    }
+
+    /**
+     * @return messages currently waiting in the ring
+     */
+    public int getOccupancy() {
+        return (int) Math.max(0, offered.get() - dispatched.get());
+    }
+
+    public int getHighWater() {
+        return highWater.get();
+    }
+
+    /**
+     * @return times the reading thread found the ring full and had to wait, i.e. stopped reading from the network
+     */
+    public long getFullWaits() {
+        return fullWaits.get();
+    }
+
+    /**
+     * @return time messages spent in the ring before being dispatched, in Nanoseconds
+     */
+    public LatencyHistogram getQueueTime() {
+        return queueTime;
+    }
+
+    void onOffered(int occupancy) {
+        offered.incrementAndGet();
+        int high;
+        while (occupancy > (high = highWater.get())) {
+            if (highWater.compareAndSet(high, occupancy)) {
+                break;
+            }
+        }
+    }
+
+    void onFullWait() {
+        fullWaits.incrementAndGet();
+    }
+
+    void onDispatched(long waitNanos) {
+        dispatched.incrementAndGet();
+        queueTime.record(waitNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "PipelineStats{capacity=" + capacity + ", dispatched=" + dispatched + ", occupancy=" + getOccupancy()
+                + ", highWater=" + highWater + ", fullWaits=" + fullWaits + ", queueTime=[" + queueTime + "]}";
+    }
+}
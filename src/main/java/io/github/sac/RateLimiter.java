@@ -0,0 +1,267 @@
+package io.github.sac;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket limiting the rate of emits or publishes of a {@link Socket}, see {@link Socket#setRateLimit}.
+ * The bucket is kept as the time the next permit becomes available, so taking a permit is a single compare and
+ * set. Messages beyond the rate are delayed, coalesced or rejected depending on the policy.
+ * A limiter may be shared by several sockets to limit their combined rate.
+ */
+public class RateLimiter {
+
+    public enum Policy {
+        /**
+         * Send excess messages once a permit is available, in order
+         */
+        DELAY,
+        /**
+         * Keep only the newest excess message per event or channel, and send it once a permit is available
+         */
+        COALESCE,
+        /**
+         * Drop excess messages, failing their acks
+         */
+        REJECT
+    }
+
+    private static ScheduledExecutorService scheduler;
+
+    private static class Pending {
+        final Runnable send;
+        final Runnable dropped;
+
+        Pending(Runnable send, Runnable dropped) {
+            this.send = send;
+            this.dropped = dropped;
+        }
+    }
+
+    private final long interval;
+    private final long tolerance;
+    private final Policy policy;
+    private volatile long maxDelay;
+
+    // Time the bucket is full again
+    private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+    private final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
+    // Delayed messages in order of their permits, later messages queue behind them until all are sent
+    private final ConcurrentLinkedQueue<Runnable> delayedSends = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger backlog = new AtomicInteger();
+
+    private final AtomicLong permitted = new AtomicLong();
+    private final AtomicLong delayed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final LatencyHistogram delayTime = new LatencyHistogram();
+
+    /**
+     * @param permitsPerSecond - sustained rate of messages
+     * @param burst - messages which may be sent at once after a quiet period
+     */
+    public RateLimiter(double permitsPerSecond, int burst, Policy policy) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        interval = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        tolerance = interval * burst;
+        this.policy = policy;
+    }
+
+    /**
+     * Reject messages which would be delayed longer, with the DELAY policy
+     * @param maxDelay - delay in Milliseconds, 0 to delay without limit
+     */
+    public RateLimiter setMaxDelay(long maxDelay) {
+        this.maxDelay = TimeUnit.MILLISECONDS.toNanos(maxDelay);
+        return this;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public long getPermittedCount() {
+        return permitted.get();
+    }
+
+    public long getDelayedCount() {
+        return delayed.get();
+    }
+
+    /**
+     * @return messages replaced by a newer message while waiting for a permit
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * @return time delayed messages waited for a permit, in Nanoseconds
+     */
+    public LatencyHistogram getDelayTime() {
+        return delayTime;
+    }
+
+    /**
+     * Takes a permit if one is available
+     * @return 0 if a permit was taken, otherwise Nanoseconds until one is available
+     */
+    long tryAcquire() {
+        while (true) {
+            long now = System.nanoTime();
+            long arrival = theoreticalArrival.get();
+            long next = Math.max(arrival, now) + interval;
+            long wait = next - now - tolerance;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Takes the next permit, available now or in the future
+     * @param maxWait - Nanoseconds, 0 to wait without limit
+     * @return Nanoseconds until the permit is available, -1 if longer than maxWait and no permit was taken
+     */
+    long reserve(long maxWait) {
+        while (true) {
+            long now = System.nanoTime();
+            long arrival = theoreticalArrival.get();
+            long next = Math.max(arrival, now) + interval;
+            long wait = Math.max(0, next - now - tolerance);
+            if (maxWait > 0 && wait > maxWait) {
+                return -1;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, next)) {
+                return wait;
+            }
+        }
+    }
+
+    /**
+     * Returns a permit taken for a message which was dropped afterwards, e.g. by another limiter
+     */
+    void refund() {
+        while (true) {
+            long now = System.nanoTime();
+            long arrival = theoreticalArrival.get();
+            if (arrival <= now) {
+                // The bucket is full already
+                return;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, Math.max(now, arrival - interval))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs {@code send} now or once a permit is available, or {@code dropped} if the message is given up
+     * @param name - event or channel, the unit of coalescing
+     * @param dropped - may be null
+     */
+    void submit(final String name, final Runnable send, Runnable dropped) {
+        switch (policy) {
+            case REJECT:
+                if (tryAcquire() == 0) {
+                    permitted.incrementAndGet();
+                    send.run();
+                } else {
+                    drop(dropped);
+                }
+                break;
+            case DELAY:
+                long wait = reserve(maxDelay);
+                if (wait < 0) {
+                    drop(dropped);
+                } else if (wait == 0 && backlog.get() == 0) {
+                    permitted.incrementAndGet();
+                    send.run();
+                } else {
+                    delayed.incrementAndGet();
+                    delayTime.record(wait);
+                    backlog.incrementAndGet();
+                    delayedSends.offer(send);
+                    // Each flush sends the oldest delayed message, so they stay in order however late the flush is
+                    getScheduler().schedule(new Runnable() {
+                        public void run() {
+                            try {
+                                delayedSends.poll().run();
+                            } finally {
+                                backlog.decrementAndGet();
+                            }
+                        }
+                    }, wait, TimeUnit.NANOSECONDS);
+                }
+                break;
+            case COALESCE:
+                if (!pending.containsKey(name) && tryAcquire() == 0) {
+                    permitted.incrementAndGet();
+                    send.run();
+                    break;
+                }
+                Pending previous = pending.put(name, new Pending(send, dropped));
+                if (previous != null) {
+                    // The scheduled flush sends the newest message instead
+                    coalesced.incrementAndGet();
+                    if (previous.dropped != null) {
+                        previous.dropped.run();
+                    }
+                    break;
+                }
+                long flushWait = reserve(0);
+                delayed.incrementAndGet();
+                delayTime.record(flushWait);
+                getScheduler().schedule(new Runnable() {
+                    public void run() {
+                        Pending newest = pending.remove(name);
+                        if (newest != null) {
+                            newest.send.run();
+                        }
+                    }
+                }, flushWait, TimeUnit.NANOSECONDS);
+                break;
+        }
+    }
+
+    private void drop(Runnable dropped) {
+        rejected.incrementAndGet();
+        if (dropped != null) {
+            dropped.run();
+        }
+    }
+
+    private static synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "RateLimiter");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return scheduler;
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimiter{policy=" + policy + ", permitted=" + permitted + ", delayed=" + delayed + ", coalesced="
+                + coalesced + ", rejected=" + rejected + "}";
+    }
+}
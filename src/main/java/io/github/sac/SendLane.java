@@ -0,0 +1,19 @@
+package io.github.sac;
+
+/**
+ * Outbound lanes of a {@link Socket} with priority lanes enabled
+ */
+public enum SendLane {
+    /**
+     * #2 heartbeat replies, handshake, subscribe and unsubscribe, always sent first
+     */
+    CONTROL,
+    /**
+     * Responses to events emitted by the server
+     */
+    ACK,
+    /**
+     * Emits and publishes
+     */
+    BULK
+}
@@ -0,0 +1,19 @@
+package io.github.sac;
+
+/**
+ * Reports handlers exceeding the budget of a {@link HandlerProfiler}
+ */
+public interface SlowHandlerListener {
+
+    /**
+     * A handler returned after exceeding the budget, called on the thread which ran it
+     */
+    void onSlowHandler(HandlerStats handler, long nanos);
+
+    /**
+     * A handler has been running longer than the budget and hasn't returned yet, called once per call from the
+     * watchdog thread
+     * @param thread - thread running the handler, e.g. to log its stack trace
+     */
+    void onHandlerStalled(HandlerStats handler, long elapsedNanos, Thread thread);
+}
@@ -1,16 +1,32 @@
 package io.github.sac;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.TextNode;
 import com.neovisionaries.ws.client.*;
+import io.github.sac.codec.ByteBufferOutputStream;
+import io.github.sac.codec.CodecException;
+import io.github.sac.codec.JsonTrees;
+import io.github.sac.codec.SocketClusterBufferCodec;
 import io.github.sac.codec.SocketClusterCodec;
+import io.github.sac.codec.SocketClusterCodecAdapter;
 
 import java.io.IOException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
@@ -23,31 +39,82 @@ public class Socket extends Emitter {
     private final static Logger LOGGER = Logger.getLogger(Socket.class.getName());
 
     private AtomicInteger counter;
-    private String URL;
+    private final EndpointSelector endpoints;
+    private volatile EndpointSelector.Endpoint currentEndpoint;
+    private volatile long connectStartTime;
+    private volatile long connectedTime;
+    // Reconnects to another end-point without delay since the last connection which stayed up
+    private int immediateFailovers;
+    private int hedgeParallelism = 1;
+    private long hedgeDelay = 0;
+    private ConnectRace race;
+    private ConnectionContext connectionContext;
+    private final Map<WebSocket, HandshakeTimings> handshakes = new ConcurrentHashMap<>();
+    private volatile HandshakeTimings handshakeTimings;
+    private final WebSocketAdapter handshakeTracker;
+    private Migration migration;
+    private MigrationListener migrationListener;
+    private volatile FrameRecorder recorder;
+    private volatile LaneScheduler lanes;
+    private volatile InboundPipeline pipeline;
+    private volatile InboundPipeline retiredPipeline;
+    private int laneFrameQueueSize;
     private WebSocketFactory factory;
     private ReconnectStrategy strategy;
-    private WebSocket ws;
+    private volatile WebSocket ws;
     private BasicListener listener;
     private String AuthToken;
-    private HashMap<Long, Object[]> acks;
+    private Map<Long, Object[]> acks;
     private List<Channel> channels;
     private WebSocketAdapter adapter;
     private Map<String, String> headers;
-    private SocketClusterCodec codec;
+    private SocketClusterBufferCodec codec;
+    private volatile byte[] encodedPing;
+    private final ByteBufferOutputStream encodeBuffer = new ByteBufferOutputStream(4096);
     private int connectionTimeout = 5000;
-    private boolean perMessageDeflate = true;
-
-    private static final ObjectMapper mapper = new ObjectMapper();
+    private CompressionPolicy compressionPolicy;
+    private volatile CompressionController compression;
+    private volatile boolean compressionAgreed;
+    private final Object sendLock = new Object();
+    private final Heartbeat heartbeat = new Heartbeat();
+    private long pingTimeout = 0;
+    // pingTimeout sent by the server of the current connection
+    private volatile long serverPingTimeout;
+    private long pingInterval = 0;
+    private long ackTimeout = 10000;
+    private final InFlightWindow inFlight = new InFlightWindow();
+    private volatile RateLimiter rateLimiter;
+    private volatile Map<String, RateLimiter> eventRateLimits = Collections.emptyMap();
+    private volatile Map<String, RateLimiter> channelRateLimits = Collections.emptyMap();
+    private Timer ackTimer;
+    private volatile LastValueCache lastValueCache;
+    private boolean replayOnAttach;
+    private volatile SubscriptionHub subscriptionHub;
+
+    // Streaming only, an ObjectMapper is created on first use by JsonTrees when a POJO is sent
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final JsonNodeFactory nodes = JsonNodeFactory.instance;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private final EnvelopeWriter envelopeWriter = new EnvelopeWriter(jsonFactory);
 
     public Socket(String URL) {
-        this.URL = URL;
+        this(Collections.singletonList(URL));
+    }
+
+    /**
+     * @param urls - end-points of the cluster, connections go to the healthy end-point with the lowest latency
+     */
+    public Socket(List<String> urls) {
+        endpoints = new EndpointSelector(urls);
         factory = new WebSocketFactory();
         counter = new AtomicInteger(1);
-        acks = new HashMap<>();
+        acks = new ConcurrentHashMap<>();
         channels = new ArrayList<>();
         adapter = getAdapter();
+        handshakeTracker = getHandshakeTracker();
         headers = new HashMap<>();
         putDefaultHeaders();
+        setCompressionPolicy(new CompressionPolicy());
     }
 
     private void putDefaultHeaders() {
@@ -76,7 +143,227 @@ public class Socket extends Emitter {
     }
 
     public void seturl(String url) {
-        this.URL = url;
+        endpoints.setUrls(Collections.singletonList(url));
+    }
+
+    public void setUrls(List<String> urls) {
+        endpoints.setUrls(urls);
+    }
+
+    /**
+     * @return cluster end-points with their latency measurements
+     */
+    public EndpointSelector getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * @return url of the current or last connection, null if never connected
+     */
+    public String getCurrentUrl() {
+        EndpointSelector.Endpoint endpoint = currentEndpoint;
+        return endpoint == null ? null : endpoint.getUrl();
+    }
+
+    /**
+     * Connect to several end-points at once and keep the connection completing its handshake first.
+     * Disabled by default
+     * @param parallelism - maximum number of end-points connected to, in ranking order
+     * @param hedgeDelay - Milliseconds to wait for a connection before trying the next end-point, 0 to race all at once
+     */
+    public void setHedgedConnect(int parallelism, long hedgeDelay) {
+        hedgeParallelism = parallelism;
+        this.hedgeDelay = hedgeDelay;
+    }
+
+    public void setMigrationListener(MigrationListener migrationListener) {
+        this.migrationListener = migrationListener;
+    }
+
+    /**
+     * Moves the socket to the best ranked other end-point without a gap, see {@link #migrate(String)}
+     */
+    public boolean migrate() {
+        return migrate(null);
+    }
+
+    /**
+     * Opens a second connection, authenticates it with the current token and subscribes it to all channels, then
+     * switches sends and dispatch to it and closes the current connection. Publications delivered by both
+     * connections meanwhile are dispatched once. Requests still pending on the closed connection fail once it is
+     * closed, acks with a BadConnectionError. The outcome is reported to the {@link MigrationListener}
+     * @param url - end-point to move to, null for the best ranked end-point other than the current one
+     * @return false if not connected, a migration is already running or there's no other end-point to move to
+     */
+    public boolean migrate(String url) {
+        Migration migration;
+        synchronized (this) {
+            if (this.migration != null || ws == null || !ws.isOpen()) {
+                return false;
+            }
+            EndpointSelector.Endpoint endpoint = null;
+            if (url != null) {
+                endpoint = endpoints.getEndpoint(url);
+            } else {
+                for (EndpointSelector.Endpoint ranked : endpoints.getRanked()) {
+                    if (ranked != currentEndpoint) {
+                        endpoint = ranked;
+                        break;
+                    }
+                }
+                if (endpoint == null) {
+                    return false;
+                }
+            }
+            migration = new Migration(endpoint);
+            this.migration = migration;
+        }
+        migration.start();
+        return true;
+    }
+
+    /**
+     * Records inbound and outbound frames until set to null, the recorder is not closed by the socket
+     */
+    public void setFrameRecorder(FrameRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Times event, channel and ack handlers until set to null, see {@link HandlerProfiler}
+     */
+    public void setHandlerProfiler(HandlerProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public HandlerProfiler getHandlerProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Queues outbound messages in control, ack and bulk lanes, so heartbeat replies, subscribes and acks are not
+     * sent behind queued emits and publishes. Disabled by default
+     * @param ackWeight - messages sent from the ack lane per turn while both ack and bulk messages are queued
+     * @param bulkWeight - messages sent from the bulk lane per turn
+     * @param frameQueueSize - frames handed to the websocket ahead of the lanes, lower values mean faster overtaking,
+     *                       at least 1
+     */
+    public synchronized void enablePriorityLanes(int ackWeight, int bulkWeight, int frameQueueSize) {
+        if (frameQueueSize < 1) {
+            throw new IllegalArgumentException("frameQueueSize must be at least 1, was " + frameQueueSize);
+        }
+        LaneScheduler lanes = new LaneScheduler(ackWeight, bulkWeight) {
+            @Override
+            void write(WebSocket webSocket, int opcode, byte[] payload) {
+                writeFrame(webSocket, opcode, payload);
+            }
+        };
+        // Replacing lanes, the new pump waits until the messages queued in the previous lanes are sent
+        LaneScheduler previous = this.lanes;
+        lanes.start(previous);
+        laneFrameQueueSize = frameQueueSize;
+        if (ws != null) {
+            ws.setFrameQueueSize(frameQueueSize);
+        }
+
+        this.lanes = lanes;
+        if (previous != null) {
+            previous.stop();
+        }
+    }
+
+    /**
+     * Sends messages directly again, waits until the messages already in the lanes are sent. If interrupted
+     * meanwhile the lanes stay in place, messages are sent directly once the queued ones are sent
+     */
+    public void disablePriorityLanes() {
+        LaneScheduler previous;
+        synchronized (this) {
+            previous = lanes;
+        }
+        if (previous != null) {
+            previous.stop();
+            // Waits without the socket's lock, sending may block while the websocket's frame queue is full
+            if (!previous.awaitFinished()) {
+                return;
+            }
+        }
+        synchronized (this) {
+            if (lanes != previous) {
+                // Enabled again meanwhile
+                return;
+            }
+            lanes = null;
+            laneFrameQueueSize = 0;
+            if (ws != null) {
+                ws.setFrameQueueSize(0);
+            }
+        }
+    }
+
+    /**
+     * @return queue counters of the lane, null if priority lanes are disabled
+     */
+    public LaneStats getLaneStats(SendLane lane) {
+        LaneScheduler lanes = this.lanes;
+        return lanes == null ? null : lanes.getStats(lane);
+    }
+
+    /**
+     * Decodes received messages and calls handlers on a separate thread instead of the one reading the socket.
+     * Messages are passed through a ring of the given size and dispatched in order; while the ring is full reading
+     * pauses. Disabled by default
+     * @param capacity - slots in the ring, rounded up to a power of two
+     */
+    public void enableInboundPipeline(int capacity) {
+        InboundPipeline pipeline = new InboundPipeline(capacity) {
+            @Override
+            void dispatch(WebSocket webSocket, byte[] message) throws Exception {
+                Socket.this.dispatch(webSocket, message);
+            }
+        };
+        InboundPipeline previous;
+        synchronized (this) {
+            previous = this.pipeline;
+            if (previous != null) {
+                // Retired before it stops accepting messages, so a message it refuses waits for the ones it holds
+                retiredPipeline = previous;
+                pipeline.start(previous);
+            } else {
+                // Messages of a disabled pipeline may still be in its ring
+                pipeline.start(retiredPipeline);
+            }
+            this.pipeline = pipeline;
+        }
+        // Stopped without the socket's lock, its decode thread may be dispatching and need it
+        if (previous != null) {
+            previous.stop();
+        }
+    }
+
+    /**
+     * Dispatches on the reading thread again, messages already in the ring are still dispatched
+     */
+    public void disableInboundPipeline() {
+        InboundPipeline previous;
+        synchronized (this) {
+            previous = pipeline;
+            if (previous != null) {
+                retiredPipeline = previous;
+            }
+            pipeline = null;
+        }
+        if (previous != null) {
+            previous.stop();
+        }
+    }
+
+    /**
+     * @return ring counters, null if the inbound pipeline is disabled
+     */
+    public PipelineStats getPipelineStats() {
+        InboundPipeline pipeline = this.pipeline;
+        return pipeline == null ? null : pipeline.getStats();
     }
 
     public void setReconnection(ReconnectStrategy strategy) {
@@ -87,8 +374,28 @@ public class Socket extends Emitter {
         this.listener = listener;
     }
 
+    /**
+     * Set binary codec, codecs not implementing {@link SocketClusterBufferCodec} are adapted
+     * @param codec - codec or null for plain JSON text frames
+     */
     public void setCodec(SocketClusterCodec codec) {
-        this.codec = codec;
+        SocketClusterBufferCodec adapted = codec == null ? null : SocketClusterCodecAdapter.adapt(codec);
+        encodedPing = adapted == null ? null : encodePing(adapted);
+        this.codec = adapted;
+    }
+
+    /**
+     * @return the #1 ping as sent through the codec, recognized without decoding, null if it can't be encoded
+     */
+    private static byte[] encodePing(SocketClusterBufferCodec codec) {
+        ByteBufferOutputStream out = new ByteBufferOutputStream(16);
+        try {
+            codec.encode(new TextNode("#1"), out);
+        } catch (CodecException e) {
+            LOGGER.log(Level.FINE, "Unable to encode ping", e);
+            return null;
+        }
+        return out.toByteArray();
     }
 
     /**
@@ -99,11 +406,230 @@ public class Socket extends Emitter {
         connectionTimeout = timeout;
     }
 
+    /**
+     * Set time without any incoming message after which the connection is considered dead and dropped,
+     * which triggers reconnection if enabled
+     * @param timeout - timeout in Milliseconds, 0 (default) to use the pingTimeout sent by the server on handshake,
+     *                negative to disable
+     */
+    public void setPingTimeout(long timeout) {
+        pingTimeout = timeout;
+    }
+
+    /**
+     * Set interval of Websocket ping frames used to measure round trip time, disabled by default
+     * @param interval - interval in Milliseconds, 0 to disable
+     */
+    public void setPingInterval(long interval) {
+        pingInterval = interval;
+    }
+
+    /**
+     * @return smoothed round trip time of Websocket pings in Nanoseconds, -1 if not measured yet
+     */
+    public long getSmoothedRtt() {
+        return heartbeat.getSmoothedRtt();
+    }
+
+    /**
+     * @return round trip time variance of Websocket pings in Nanoseconds, -1 if not measured yet
+     */
+    public long getRttVariance() {
+        return heartbeat.getRttVariance();
+    }
+
+    /**
+     * Set default time to wait for responses to emitAsync and publishAsync requests - set to 10000 by default
+     * @param timeout - timeout in Milliseconds, 0 to wait forever
+     */
+    public void setAckTimeout(long timeout) {
+        ackTimeout = timeout;
+    }
+
+    /**
+     * Limit the number of emitAsync and publishAsync requests awaiting a response, unlimited by default
+     * @param maxInFlight - maximum number of requests in flight
+     * @param rejectWhenFull - fail further requests with RejectedExecutionException instead of queueing them
+     */
+    public void setMaxInFlight(int maxInFlight, boolean rejectWhenFull) {
+        inFlight.configure(maxInFlight, rejectWhenFull);
+    }
+
+    public int getInFlightCount() {
+        return inFlight.getInFlight();
+    }
+
+    public int getQueuedRequestCount() {
+        return inFlight.getQueued();
+    }
+
+    /**
+     * Limit the rate of all emits and publishes, applied after the limits of the event or channel. Messages it drops
+     * don't count against those.
+     * @param limiter - null to remove the limit
+     */
+    public void setRateLimit(RateLimiter limiter) {
+        rateLimiter = limiter;
+    }
+
+    /**
+     * Limit the rate of emits of the matching events, the first matching pattern applies
+     * @param pattern - event name, or prefix followed by '*'
+     * @param limiter - null to remove the limit
+     */
+    public synchronized void setEventRateLimit(String pattern, RateLimiter limiter) {
+        eventRateLimits = withRateLimit(eventRateLimits, pattern, limiter);
+    }
+
+    /**
+     * Limit the rate of publishes to the matching channels, the first matching pattern applies
+     * @param pattern - channel name, or prefix followed by '*'
+     * @param limiter - null to remove the limit
+     */
+    public synchronized void setChannelRateLimit(String pattern, RateLimiter limiter) {
+        channelRateLimits = withRateLimit(channelRateLimits, pattern, limiter);
+    }
+
+    private static Map<String, RateLimiter> withRateLimit(Map<String, RateLimiter> limits, String pattern,
+                                                          RateLimiter limiter) {
+        // Copied on write, so sends look up limits without locking
+        Map<String, RateLimiter> copy = new LinkedHashMap<>(limits);
+        if (limiter == null) {
+            copy.remove(pattern);
+        } else {
+            copy.put(pattern, limiter);
+        }
+        return copy;
+    }
+
+    private static RateLimiter findRateLimit(Map<String, RateLimiter> limits, String name) {
+        for (Map.Entry<String, RateLimiter> entry : limits.entrySet()) {
+            String pattern = entry.getKey();
+            if (pattern.endsWith("*") ? name.regionMatches(0, pattern, 0, pattern.length() - 1)
+                    : pattern.equals(name)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs {@code send} on the event thread once the rate limits of the event or channel and of the socket permit
+     * @param dropped - called if a limiter gives up the message, may be null
+     */
+    private void throttle(final String name, boolean publish, final Runnable send, final Runnable dropped) {
+        final RateLimiter socketLimiter = rateLimiter;
+        RateLimiter limiter = findRateLimit(publish ? channelRateLimits : eventRateLimits, name);
+        if (limiter == null && socketLimiter == null) {
+            EventThread.exec(send);
+            return;
+        }
+
+        final Runnable exec = new Runnable() {
+            public void run() {
+                EventThread.exec(send);
+            }
+        };
+        if (limiter == null) {
+            socketLimiter.submit(name, exec, dropped);
+        } else if (socketLimiter == null) {
+            limiter.submit(name, exec, dropped);
+        } else {
+            final RateLimiter patternLimiter = limiter;
+            final Runnable refunded = new Runnable() {
+                public void run() {
+                    // The message isn't sent, so it must not count against the event or channel
+                    patternLimiter.refund();
+                    if (dropped != null) {
+                        dropped.run();
+                    }
+                }
+            };
+            limiter.submit(name, new Runnable() {
+                public void run() {
+                    socketLimiter.submit(name, exec, refunded);
+                }
+            }, dropped);
+        }
+    }
+
+    private Runnable rateLimited(final String name, final Ack ack) {
+        if (ack == null) {
+            return null;
+        }
+        return new Runnable() {
+            public void run() {
+                ObjectNode error = nodes.objectNode();
+                error.put("name", "RateLimitError");
+                error.put("message", "Dropped by client side rate limit");
+                ack.call(name, error, null);
+            }
+        };
+    }
+
+    /**
+     * Keep the last received message of every subscribed channel, see {@link Channel#getLastValue()}
+     * @param maxEntries - maximum number of cached channels, least recently used channels are evicted beyond it
+     * @param maxBytes - maximum total size of the cached messages as received
+     * @param replayOnAttach - call listeners added with {@link Channel#onMessage} with the cached message right away
+     */
+    public void enableLastValueCache(int maxEntries, long maxBytes, boolean replayOnAttach) {
+        this.replayOnAttach = replayOnAttach;
+        lastValueCache = new LastValueCache(maxEntries, maxBytes);
+    }
+
+    public void disableLastValueCache() {
+        lastValueCache = null;
+    }
+
+    /**
+     * @return last value cache or null if disabled
+     */
+    public LastValueCache getLastValueCache() {
+        return lastValueCache;
+    }
+
+    /**
+     * Share channel subscriptions with the other sockets of a hub, set before subscribing channels. Channels
+     * subscribed before are subscribed on this socket only until they are subscribed again, e.g. after a reconnect.
+     * @param hub - hub of sockets connected to the same cluster, null to subscribe channels on this socket only
+     */
+    public void setSubscriptionHub(SubscriptionHub hub) {
+        subscriptionHub = hub;
+    }
+
+    /**
+     * @return subscription hub or null if none is set
+     */
+    public SubscriptionHub getSubscriptionHub() {
+        return subscriptionHub;
+    }
+
     /**
      * Disable Websocket perMessageDeflate compression, which is enabled by default
      */
     public void disablePerMessageDeflateCompression() {
-        perMessageDeflate = false;
+        setCompressionPolicy(null);
+    }
+
+    /**
+     * Set Websocket perMessageDeflate settings, applied on the next connect
+     * @param policy - compression policy or null to disable compression
+     */
+    public void setCompressionPolicy(CompressionPolicy policy) {
+        compressionPolicy = policy;
+        CompressionController previous = compression;
+        compression = policy == null ? null : new CompressionController(policy);
+        if (previous != null) {
+            previous.release();
+        }
+    }
+
+    /**
+     * @return outbound compression counters, null if compression is disabled
+     */
+    public CompressionStats getCompressionStats() {
+        return compression == null ? null : compression.getStats();
     }
 
     /**
@@ -114,24 +640,108 @@ public class Socket extends Emitter {
         return factory;
     }
 
+    /**
+     * Shares TLS sessions and resolved addresses with the other sockets using the context, so reconnects skip the
+     * full TLS handshake. Replaces an SSLContext set on the factory
+     */
+    public void setConnectionContext(ConnectionContext context) {
+        connectionContext = context;
+        factory.setSSLContext(context.getSSLContext());
+    }
+
+    /**
+     * @return context set on this socket, the shared default context otherwise
+     */
+    public synchronized ConnectionContext getConnectionContext() {
+        if (connectionContext == null) {
+            connectionContext = ConnectionContext.getDefault();
+        }
+        return connectionContext;
+    }
+
+    /**
+     * @return phase timings of the current or last connection, null if never connected
+     */
+    public HandshakeTimings getHandshakeTimings() {
+        return handshakeTimings;
+    }
+
     public void setAuthToken(String token) {
         AuthToken = token;
     }
 
-    private void send(WebSocket webSocket, String data) {
-        send(webSocket, new TextNode(data));
+    private void sendText(WebSocket webSocket, byte[] payload, SendLane lane) {
+        sendFrame(webSocket, WebSocketOpcode.TEXT, payload, lane);
     }
 
-    private void send(JsonNode data) {
-        send(ws, data);
+    private void sendFrame(WebSocket webSocket, int opcode, byte[] payload, SendLane lane) {
+        if (webSocket == null) {
+            // Not connected, e.g. replies of handlers fed by a FrameReplayer
+            return;
+        }
+        FrameRecorder recorder = this.recorder;
+        if (recorder != null) {
+            recorder.record(FrameRecorder.OUTBOUND, opcode, payload);
+        }
+
+        LaneScheduler lanes = this.lanes;
+        while (lanes != null) {
+            if (lanes.enqueue(lane, webSocket, opcode, payload)) {
+                return;
+            }
+            // Stopped after sending its messages, replaced by other lanes or being disabled
+            LaneScheduler current = this.lanes;
+            lanes = current == lanes ? null : current;
+        }
+        writeFrame(webSocket, opcode, payload);
+    }
+
+    private void writeFrame(WebSocket webSocket, int opcode, byte[] payload) {
+        CompressionController compression = compressionAgreed ? this.compression : null;
+        boolean compress = compression != null && compression.shouldCompress(payload.length);
+        if (compress) {
+            // Sampled outside of the lock, so other senders aren't held up by it
+            compression.beforeCompress(payload);
+        }
+
+        synchronized (sendLock) {
+            if (compression == null) {
+                webSocket.sendFrame(new WebSocketFrame().setFin(true).setOpcode(opcode).setPayload(payload));
+            } else if (compress) {
+                webSocket.sendFrame(new CompressibleFrame(payload.length).setFin(true).setOpcode(opcode)
+                        .setPayload(payload));
+            } else {
+                // permessage-deflate leaves fragmented messages alone, so the message is sent as a non-final frame
+                // directly followed by an empty final continuation frame
+                webSocket.sendFrame(new WebSocketFrame().setFin(false).setOpcode(opcode).setPayload(payload));
+                webSocket.sendFrame(WebSocketFrame.createContinuationFrame().setFin(true));
+            }
+        }
+    }
+
+    private void send(WebSocket webSocket, String data, SendLane lane) {
+        send(webSocket, new TextNode(data), lane);
     }
 
-    private void send(WebSocket webSocket, JsonNode data) {
+    private void send(WebSocket webSocket, JsonNode data, SendLane lane) {
         if (codec == null) {
-            webSocket.sendText(data.toString());
-        } else {
-            webSocket.sendBinary(codec.encode(data));
+            sendText(webSocket, data.toString().getBytes(UTF_8), lane);
+            return;
+        }
+
+        byte[] payload;
+        synchronized (encodeBuffer) {
+            encodeBuffer.reset();
+            try {
+                codec.encode(data, encodeBuffer);
+            } catch (CodecException e) {
+                LOGGER.log(Level.WARNING, "Unable to encode message", e);
+                return;
+            }
+            // Frames are queued by reference, so the pooled buffer can't be handed to the websocket
+            payload = encodeBuffer.toByteArray();
         }
+        sendFrame(webSocket, WebSocketOpcode.BINARY, payload, lane);
     }
 
     public WebSocketAdapter getAdapter() {
@@ -139,38 +749,71 @@ public class Socket extends Emitter {
 
             @Override
             public void onConnected(WebSocket websocket, Map<String, List<String>> headers) {
+                HandshakeTimings timings = handshakes.remove(websocket);
+                Migration migration = getMigration();
+                if (migration != null && migration.isTarget(websocket)) {
+                    migration.onConnected(timings);
+                    return;
+                }
+                if (!claimConnection(websocket)) {
+                    // Lost a hedged connect race
+                    websocket.disconnect();
+                    return;
+                }
+                handshakeTimings = timings;
 
                 /**
                  * Code for sending handshake
                  */
 
                 counter.set(1);
+                connectedTime = System.nanoTime();
+                compressionAgreed = isCompressionAgreed(websocket);
                 if (strategy != null) {
                     strategy.setAttemptsMade(0);
                 }
 
-                ObjectNode handshakeObject = mapper.createObjectNode();
-                handshakeObject.put("event", "#handshake");
-
-                ObjectNode object = mapper.createObjectNode();
-                object.put("authToken", AuthToken);
-
-                handshakeObject.set("data", object);
-                handshakeObject.put("cid", counter.getAndIncrement());
-
-                send(websocket, handshakeObject);
+                heartbeat.start(websocket, Math.max(0, pingTimeout), pingInterval);
+                sendHandshake(websocket, counter.getAndIncrement());
 
                 listener.onConnected(Socket.this, headers);
             }
 
             @Override
             public void onDisconnected(WebSocket websocket, WebSocketFrame serverCloseFrame, WebSocketFrame clientCloseFrame, boolean closedByServer) throws Exception {
+                Migration migration = getMigration();
+                if (websocket != ws) {
+                    if (migration != null) {
+                        migration.onDisconnected(websocket);
+                    }
+                    return;
+                }
+                if (migration != null) {
+                    migration.abort(new IOException("Connection closed during migration"));
+                }
+                if (strategy != null && currentEndpoint != null) {
+                    currentEndpoint.recordFailure();
+                }
+                heartbeat.stop();
+                failPendingFutures();
+                CompressionController compression = Socket.this.compression;
+                if (compression != null) {
+                    compression.release();
+                }
+                SubscriptionHub hub = subscriptionHub;
+                if (hub != null) {
+                    hub.onDisconnected(Socket.this);
+                }
                 listener.onDisconnected(Socket.this, serverCloseFrame, clientCloseFrame, closedByServer);
                 reconnect();
             }
 
             @Override
             public void onConnectError(WebSocket websocket, WebSocketException exception) throws Exception {
+                if (websocket != ws) {
+                    return;
+                }
+                connectFailed(websocket, currentEndpoint);
                 listener.onConnectError(Socket.this, exception);
                 reconnect();
             }
@@ -178,70 +821,53 @@ public class Socket extends Emitter {
 
             @Override
             public void onFrame(WebSocket websocket, WebSocketFrame frame) throws Exception {
-                JsonNode payload;
-
-                if (codec == null) {
-                    payload = getTextPayload(frame.getPayloadText());
-                } else {
-                    payload = codec.decode(frame.getPayload());
+                // While migrating both connections are dispatched
+                Migration migration = getMigration();
+                if (websocket != ws && (migration == null || !migration.isParticipant(websocket))) {
+                    return;
                 }
-
-                if (payload.isTextual() && payload.asText().equalsIgnoreCase("#1")) {
-                    send(websocket, "#2"); // PONG
+                FrameRecorder recorder = Socket.this.recorder;
+                if (recorder != null) {
+                    recorder.record(FrameRecorder.INBOUND, frame.getOpcode(), frame.getPayload());
+                }
+                if (websocket == ws) {
+                    heartbeat.onFrame(frame);
+                    if (frame.isPongFrame() && currentEndpoint != null && heartbeat.getSmoothedRtt() >= 0) {
+                        currentEndpoint.recordRtt(heartbeat.getSmoothedRtt());
+                    }
+                }
+                if (!frame.isTextFrame() && !frame.isBinaryFrame()) {
                     return;
                 }
 
-                LOGGER.info("Message: " + payload.toString());
-
-                JsonNode dataobject = payload.get("data");
-                Integer rid = payload.get("rid").asInt();
-                Integer cid = payload.get("cid").asInt();
-                String event = payload.get("event").asText();
-
-                switch (Parser.parse(dataobject, event)) {
-                    case ISAUTHENTICATED:
-                        listener.onAuthentication(Socket.this, dataobject.get("isAuthenticated").asBoolean());
-                        subscribeChannels();
-                        break;
-                    case PUBLISH:
-                        Socket.this.handlePublish(dataobject.get("channel").asText(), dataobject.get("data"));
-                        break;
-                    case REMOVETOKEN:
-                        setAuthToken(null);
-                        break;
-                    case SETTOKEN:
-                        String token = dataobject.get("token").asText();
-                        setAuthToken(token);
-                        listener.onSetAuthToken(token, Socket.this);
-                        break;
-                    case EVENT:
-                        if (hasEventAck(event)) {
-                            handleEmitAck(event, dataobject, ack(Long.valueOf(cid)));
-                        } else {
-                            Socket.this.handleEmit(event, dataobject);
-                        }
-                        break;
-                    case ACKRECEIVE:
-                        if (acks.containsKey((long) rid)) {
-                            Object[] objects = acks.remove((long) rid);
-                            if (objects != null) {
-                                Ack fn = (Ack) objects[1];
-                                if (fn != null) {
-                                    fn.call((String) objects[0], payload.get("error"), dataobject);
-                                } else {
-                                    LOGGER.info("ack function is null with rid " + rid);
-                                }
+                InboundPipeline pipeline = Socket.this.pipeline;
+                if (pipeline != null && isPing(frame)) {
+                    // Answered right away, so a busy pipeline doesn't make the server time out the connection
+                    send(websocket, "#2", SendLane.CONTROL);
+                } else {
+                    while (pipeline != null && !pipeline.offer(websocket, frame.getPayload())) {
+                        // Stopped, the pipeline replacing it dispatches after the stopped one finished
+                        InboundPipeline current = Socket.this.pipeline;
+                        pipeline = current == pipeline ? null : current;
+                    }
+                    if (pipeline == null) {
+                        // Keep the order of messages still in a disabled or replaced pipeline
+                        InboundPipeline retired = retiredPipeline;
+                        if (retired != null) {
+                            retired.awaitFinished();
+                            if (retiredPipeline == retired) {
+                                retiredPipeline = null;
                             }
                         }
-                        break;
+                        dispatch(websocket, frame.getPayload());
+                    }
                 }
             }
 
-            private JsonNode getTextPayload(String payloadText) throws IOException {
-                try {
-                    return mapper.readTree(payloadText);
-                } catch (JsonParseException e) {
-                    return mapper.valueToTree(payloadText);
+            @Override
+            public void onFrameSent(WebSocket websocket, WebSocketFrame frame) throws Exception {
+                if (frame instanceof CompressibleFrame && compression != null) {
+                    compression.onCompressed(((CompressibleFrame) frame).originalLength, frame.getPayloadLength());
                 }
             }
 
@@ -259,68 +885,347 @@ public class Socket extends Emitter {
 
     }
 
+    private boolean isPing(WebSocketFrame frame) {
+        byte[] payload = frame.getPayload();
+        if (payload == null) {
+            return false;
+        }
+        if (codec == null) {
+            return frame.isTextFrame() && payload.length == 2 && payload[0] == '#' && payload[1] == '1';
+        }
+        byte[] ping = encodedPing;
+        return ping != null && Arrays.equals(payload, ping);
+    }
+
+    /**
+     * Decodes and dispatches a text or binary message, also fed by {@link FrameReplayer}
+     * @param websocket - connection the message arrived on, null when replayed
+     */
+    void dispatch(WebSocket websocket, byte[] message) throws IOException {
+        Migration migration = getMigration();
+        JsonNode payload;
+
+        if (codec == null) {
+            payload = getTextPayload(message);
+        } else {
+            try {
+                payload = codec.decode(ByteBuffer.wrap(message));
+            } catch (CodecException e) {
+                LOGGER.log(Level.WARNING, "Unable to decode message", e);
+                return;
+            }
+        }
+
+        if (payload.isTextual() && payload.asText().equalsIgnoreCase("#1")) {
+            send(websocket, "#2", SendLane.CONTROL); // PONG
+            return;
+        }
+
+        // Formatted by the handler only, so binary payloads are not base64-encoded when logging is disabled
+        LOGGER.log(Level.INFO, "Message: {0}", payload);
+
+        // Responses carry only rid, data and error
+        JsonNode dataobject = payload.path("data");
+        Integer rid = payload.path("rid").asInt();
+        Integer cid = payload.path("cid").asInt();
+        String event = payload.hasNonNull("event") ? payload.get("event").asText() : null;
+
+        switch (Parser.parse(dataobject, event)) {
+            case ISAUTHENTICATED:
+                if (migration != null && migration.isTarget(websocket)) {
+                    migration.onAuthenticated(dataobject.path("pingTimeout").asLong(0));
+                    break;
+                }
+                HandshakeTimings timings = handshakeTimings;
+                if (timings != null) {
+                    timings.onSocketClusterHandshake();
+                }
+                if (dataobject.has("pingTimeout")) {
+                    serverPingTimeout = dataobject.get("pingTimeout").asLong();
+                }
+                if (pingTimeout == 0 && dataobject.has("pingTimeout") && websocket != null) {
+                    heartbeat.start(websocket, serverPingTimeout, pingInterval);
+                }
+                listener.onAuthentication(Socket.this, dataobject.get("isAuthenticated").asBoolean());
+                subscribeChannels();
+                break;
+            case PUBLISH:
+                String channel = dataobject.get("channel").asText();
+                if (migration != null && !migration.accept(websocket, channel, dataobject.get("data"))) {
+                    break;
+                }
+                SubscriptionHub hub = subscriptionHub;
+                if (hub == null || !hub.publish(Socket.this, channel, dataobject.get("data"), message.length)) {
+                    deliverPublish(channel, dataobject.get("data"), message.length);
+                }
+                break;
+            case REMOVETOKEN:
+                setAuthToken(null);
+                break;
+            case SETTOKEN:
+                String token = dataobject.get("token").asText();
+                setAuthToken(token);
+                listener.onSetAuthToken(token, Socket.this);
+                break;
+            case EVENT:
+                if (hasEventAck(event)) {
+                    handleEmitAck(event, payload.get("data"), ack(Long.valueOf(cid)));
+                } else {
+                    Socket.this.handleEmit(event, payload.get("data"));
+                }
+                break;
+            case ACKRECEIVE:
+                if (acks.containsKey((long) rid)) {
+                    Object[] objects = acks.remove((long) rid);
+                    if (objects != null) {
+                        Ack fn = (Ack) objects[1];
+                        if (fn != null) {
+                            call((String) objects[0], fn, payload.get("error"), payload.get("data"));
+                        } else {
+                            LOGGER.info("ack function is null with rid " + rid);
+                        }
+                    }
+                }
+                break;
+        }
+    }
+
+    private JsonNode getTextPayload(byte[] message) throws IOException {
+        JsonParser parser = jsonFactory.createParser(message);
+        try {
+            JsonNode payload = JsonTrees.readTree(parser);
+            if (payload != null) {
+                return payload;
+            }
+        } catch (JsonParseException e) {
+            // Not JSON, e.g. the #1 ping
+        } finally {
+            parser.close();
+        }
+        return TextNode.valueOf(new String(message, UTF_8));
+    }
+
     private void setDataField(ObjectNode object, Object data) {
         if (data instanceof JsonNode) {
             object.set("data", (JsonNode) data);
+        } else if (data instanceof byte[]) {
+            // BinaryNode is written as a native bin value by binary codecs
+            object.put("data", (byte[]) data);
+        } else if (data instanceof ByteBuffer) {
+            object.put("data", toByteArray((ByteBuffer) data));
         } else {
             object.putPOJO("data", data);
         }
     }
 
+    private static byte[] toByteArray(ByteBuffer buffer) {
+        ByteBuffer slice = buffer.duplicate();
+        if (slice.hasArray() && slice.arrayOffset() == 0 && slice.position() == 0
+                && slice.remaining() == slice.array().length) {
+            return slice.array();
+        }
+        byte[] bytes = new byte[slice.remaining()];
+        slice.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Envelopes are written straight to a text frame when no codec is set,
+     * the binary codecs still work on a tree
+     */
+    private void sendHandshake(WebSocket webSocket, long cid) {
+        if (codec == null) {
+            try {
+                sendText(webSocket, envelopeWriter.writeHandshake(AuthToken, cid), SendLane.CONTROL);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to write handshake", e);
+            }
+            return;
+        }
+
+        ObjectNode handshakeObject = nodes.objectNode();
+        handshakeObject.put("event", "#handshake");
+
+        ObjectNode object = nodes.objectNode();
+        object.put("authToken", AuthToken);
+
+        handshakeObject.set("data", object);
+        handshakeObject.put("cid", cid);
+
+        send(webSocket, handshakeObject, SendLane.CONTROL);
+    }
+
+    private void sendEmit(WebSocket webSocket, String event, Object data, long cid) {
+        if (codec == null) {
+            try {
+                sendText(webSocket, envelopeWriter.writeEmit(event, data, cid), SendLane.BULK);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to write event " + event, e);
+            }
+            return;
+        }
+
+        ObjectNode eventObject = nodes.objectNode();
+        eventObject.put("event", event);
+        setDataField(eventObject, data);
+        if (cid != EnvelopeWriter.NO_CID) {
+            eventObject.put("cid", cid);
+        }
+        send(webSocket, eventObject, SendLane.BULK);
+    }
+
+    private void sendPublish(WebSocket webSocket, String channel, Object data, long cid) {
+        if (codec == null) {
+            try {
+                sendText(webSocket, envelopeWriter.writePublish(channel, data, cid), SendLane.BULK);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to write publish to " + channel, e);
+            }
+            return;
+        }
+
+        ObjectNode publishObject = nodes.objectNode();
+        publishObject.put("event", "#publish");
+
+        ObjectNode dataObject = nodes.objectNode();
+        dataObject.put("channel", channel);
+        setDataField(dataObject, data);
+        publishObject.set("data", dataObject);
+
+        publishObject.put("cid", cid);
+        send(webSocket, publishObject, SendLane.BULK);
+    }
+
+    private void sendSubscribe(String channel, long cid) {
+        sendSubscribe(ws, channel, cid);
+    }
+
+    private void sendSubscribe(WebSocket webSocket, String channel, long cid) {
+        if (codec == null) {
+            try {
+                sendText(webSocket, envelopeWriter.writeSubscribe(channel, cid), SendLane.CONTROL);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to write subscribe to " + channel, e);
+            }
+            return;
+        }
+
+        ObjectNode subscribeObject = nodes.objectNode();
+        subscribeObject.put("event", "#subscribe");
+        subscribeObject.set("data", nodes.objectNode().put("channel", channel));
+        subscribeObject.put("cid", cid);
+        send(webSocket, subscribeObject, SendLane.CONTROL);
+    }
+
+    private void sendUnsubscribe(WebSocket webSocket, String channel, long cid) {
+        if (codec == null) {
+            try {
+                sendText(webSocket, envelopeWriter.writeUnsubscribe(channel, cid), SendLane.CONTROL);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to write unsubscribe from " + channel, e);
+            }
+            return;
+        }
+
+        ObjectNode subscribeObject = nodes.objectNode();
+        subscribeObject.put("event", "#unsubscribe");
+        subscribeObject.put("data", channel);
+        subscribeObject.put("cid", cid);
+        send(webSocket, subscribeObject, SendLane.CONTROL);
+    }
+
+    private void sendResponse(long rid, JsonNode error, JsonNode data) {
+        if (codec == null) {
+            try {
+                sendText(ws, envelopeWriter.writeResponse(rid, error, data), SendLane.ACK);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to write response " + rid, e);
+            }
+            return;
+        }
+
+        ObjectNode object = nodes.objectNode();
+        object.set("error", error);
+        object.set("data", data);
+        object.put("rid", rid);
+        send(ws, object, SendLane.ACK);
+    }
+
     public Socket emit(final String event, final Object data) {
-        EventThread.exec(new Runnable() {
+        throttle(event, false, new Runnable() {
             public void run() {
-                ObjectNode eventObject = mapper.createObjectNode();
-                eventObject.put("event", event);
-                setDataField(eventObject, data);
-                send(eventObject);
+                sendEmit(ws, event, data, EnvelopeWriter.NO_CID);
             }
-        });
+        }, null);
         return this;
     }
 
     public Socket emit(final String event, final Object data, final Ack ack) {
-        EventThread.exec(new Runnable() {
+        throttle(event, false, new Runnable() {
             public void run() {
-                ObjectNode eventObject = mapper.createObjectNode();
-                acks.put(counter.longValue(), getAckObject(event, ack));
-                eventObject.put("event", event);
-                setDataField(eventObject, data);
-                eventObject.put("cid", counter.getAndIncrement());
-                send(eventObject);
+                WebSocket webSocket = ws;
+                long cid = counter.getAndIncrement();
+                acks.put(cid, getAckObject(event, ack, webSocket));
+                sendEmit(webSocket, event, data, cid);
             }
-        });
+        }, rateLimited(event, ack));
         return this;
     }
 
+    /**
+     * Subscribes upstream on this socket only, bypassing the subscription hub. Subscribe through {@link Channel} or
+     * the hub instead, so the hub knows which socket owns the channel.
+     */
     private Socket subscribe(final String channel) {
         EventThread.exec(new Runnable() {
             public void run() {
-                ObjectNode subscribeObject = mapper.createObjectNode();
-                subscribeObject.put("event", "#subscribe");
-                subscribeObject.set("data", mapper.createObjectNode().put("channel", channel));
-
-                subscribeObject.put("cid", counter.getAndIncrement());
-                send(subscribeObject);
+                sendSubscribe(channel, counter.getAndIncrement());
             }
         });
         return this;
     }
 
-    private Object[] getAckObject(String event, Ack ack) {
-        Object object[] = {event, ack};
+    /**
+     * Delivers a received message, or one received by another socket of the subscription hub
+     */
+    void deliverPublish(String channel, JsonNode data, int size) {
+        LastValueCache cache = lastValueCache;
+        if (cache != null) {
+            cache.put(channel, data, size);
+        }
+        handlePublish(channel, data);
+    }
+
+    void subscribeUpstream(String channel, Ack ack) {
+        subscribe(channel, ack);
+    }
+
+    void unsubscribeUpstream(String channel, Ack ack) {
+        if (ack == null) {
+            unsubscribe(channel);
+        } else {
+            unsubscribe(channel, ack);
+        }
+    }
+
+    /**
+     * @param webSocket - connection the request is sent on, its response can only arrive there
+     */
+    private Object[] getAckObject(String event, Ack ack, WebSocket webSocket) {
+        Object object[] = {event, ack, webSocket};
         return object;
     }
 
+    /**
+     * Subscribes upstream on this socket only, see {@link #subscribe(String)}
+     */
     private Socket subscribe(final String channel, final Ack ack) {
         EventThread.exec(new Runnable() {
             public void run() {
-                ObjectNode subscribeObject = mapper.createObjectNode();
-                subscribeObject.put("event", "#subscribe");
-                acks.put(counter.longValue(), getAckObject(channel, ack));
-                subscribeObject.set("data", mapper.createObjectNode().put("channel", channel));
-                subscribeObject.put("cid", counter.getAndIncrement());
-                send(subscribeObject);
+                WebSocket webSocket = ws;
+                long cid = counter.getAndIncrement();
+                acks.put(cid, getAckObject(channel, ack, webSocket));
+                sendSubscribe(webSocket, channel, cid);
             }
         });
         return this;
@@ -329,11 +1234,7 @@ public class Socket extends Emitter {
     private Socket unsubscribe(final String channel) {
         EventThread.exec(new Runnable() {
             public void run() {
-                ObjectNode subscribeObject = mapper.createObjectNode();
-                subscribeObject.put("event", "#unsubscribe");
-                subscribeObject.put("data", channel);
-                subscribeObject.put("cid", counter.getAndIncrement());
-                send(subscribeObject);
+                sendUnsubscribe(ws, channel, counter.getAndIncrement());
             }
         });
         return this;
@@ -342,55 +1243,171 @@ public class Socket extends Emitter {
     private Socket unsubscribe(final String channel, final Ack ack) {
         EventThread.exec(new Runnable() {
             public void run() {
-                ObjectNode subscribeObject = mapper.createObjectNode();
-                subscribeObject.put("event", "#unsubscribe");
-                subscribeObject.put("data", channel);
-
-                acks.put(counter.longValue(), getAckObject(channel, ack));
-                subscribeObject.put("cid", counter.getAndIncrement());
-                send(subscribeObject);
+                WebSocket webSocket = ws;
+                long cid = counter.getAndIncrement();
+                acks.put(cid, getAckObject(channel, ack, webSocket));
+                sendUnsubscribe(webSocket, channel, cid);
             }
         });
         return this;
     }
 
     public Socket publish(final String channel, final Object data) {
-        EventThread.exec(new Runnable() {
+        throttle(channel, true, new Runnable() {
             public void run() {
-                ObjectNode publishObject = mapper.createObjectNode();
-                publishObject.put("event", "#publish");
+                sendPublish(ws, channel, data, counter.getAndIncrement());
+            }
+        }, null);
 
-                ObjectNode dataObject = mapper.createObjectNode();
-                dataObject.put("channel", channel);
-                setDataField(dataObject, data);
-                publishObject.set("data", dataObject);
+        return this;
+    }
 
-                publishObject.put("cid", counter.getAndIncrement());
-                send(publishObject);
+    public Socket publish(final String channel, final Object data, final Ack ack) {
+        throttle(channel, true, new Runnable() {
+            public void run() {
+                WebSocket webSocket = ws;
+                long cid = counter.getAndIncrement();
+                acks.put(cid, getAckObject(channel, ack, webSocket));
+                sendPublish(webSocket, channel, data, cid);
             }
-        });
+        }, rateLimited(channel, ack));
 
         return this;
     }
 
-    public Socket publish(final String channel, final Object data, final Ack ack) {
-        EventThread.exec(new Runnable() {
+    public AckFuture emitAsync(String event, Object data) {
+        return request(event, data, false, ackTimeout);
+    }
+
+    /**
+     * @param timeout - time to wait for the response in Milliseconds, 0 to wait forever
+     */
+    public AckFuture emitAsync(String event, Object data, long timeout) {
+        return request(event, data, false, timeout);
+    }
+
+    public AckFuture publishAsync(String channel, Object data) {
+        return request(channel, data, true, ackTimeout);
+    }
+
+    /**
+     * @param timeout - time to wait for the response in Milliseconds, 0 to wait forever
+     */
+    public AckFuture publishAsync(String channel, Object data, long timeout) {
+        return request(channel, data, true, timeout);
+    }
+
+    private AckFuture request(final String name, final Object data, final boolean publish, final long timeout) {
+        final AckFuture future = new AckFuture(name);
+
+        if (timeout > 0) {
+            final TimerTask timeoutTask = new TimerTask() {
+                @Override
+                public void run() {
+                    future.fail(new TimeoutException("No response for " + name + " within " + timeout + " ms"));
+                }
+            };
+            getAckTimer().schedule(timeoutTask, timeout);
+            future.onComplete(new Runnable() {
+                public void run() {
+                    timeoutTask.cancel();
+                }
+            });
+        }
+
+        final Runnable send = new Runnable() {
             public void run() {
-                ObjectNode publishObject = mapper.createObjectNode();
-                publishObject.put("event", "#publish");
+                if (future.isDone()) {
+                    // Cancelled or timed out while queued, pass the slot on
+                    inFlight.release();
+                    return;
+                }
+                WebSocket webSocket = ws;
+                final long cid = counter.getAndIncrement();
+                acks.put(cid, getAckObject(name, new FutureAck(future), webSocket));
+                future.onComplete(new Runnable() {
+                    public void run() {
+                        acks.remove(cid);
+                        inFlight.release();
+                    }
+                });
 
-                ObjectNode dataObject = mapper.createObjectNode();
-                acks.put(counter.longValue(), getAckObject(channel, ack));
-                dataObject.put("channel", channel);
-                setDataField(dataObject, data);
-                publishObject.set("data", dataObject);
+                if (publish) {
+                    sendPublish(webSocket, name, data, cid);
+                } else {
+                    sendEmit(webSocket, name, data, cid);
+                }
+            }
+        };
 
-                publishObject.put("cid", counter.getAndIncrement());
-                send(publishObject);
+        final Runnable dropped = new Runnable() {
+            public void run() {
+                future.fail(new RejectedExecutionException("Rate limit exceeded, dropped " + name));
+                inFlight.release();
+            }
+        };
+        boolean accepted = inFlight.submit(new Runnable() {
+            public void run() {
+                throttle(name, publish, send, dropped);
             }
         });
+        if (!accepted) {
+            future.fail(new RejectedExecutionException("Too many requests in flight, rejected " + name));
+        }
+        return future;
+    }
 
-        return this;
+    private synchronized Timer getAckTimer() {
+        if (ackTimer == null) {
+            ackTimer = new Timer("AckTimeout", true);
+        }
+        return ackTimer;
+    }
+
+    private void failPendingFutures() {
+        for (Object[] objects : acks.values()) {
+            if (objects[1] instanceof FutureAck) {
+                ((FutureAck) objects[1]).future.fail(new IOException("Connection closed before response"));
+            }
+        }
+    }
+
+    /**
+     * Fails the requests sent on a connection closed while another one replaced it, e.g. after a migration
+     */
+    private void failPendingAcks(WebSocket webSocket) {
+        for (Map.Entry<Long, Object[]> entry : acks.entrySet()) {
+            Object[] objects = entry.getValue();
+            // Removed first, as its response may just be arriving
+            if (objects[2] != webSocket || acks.remove(entry.getKey()) == null) {
+                continue;
+            }
+            String name = (String) objects[0];
+            if (objects[1] instanceof FutureAck) {
+                ((FutureAck) objects[1]).future.fail(new IOException("Connection closed before response"));
+            } else if (objects[1] != null) {
+                ObjectNode error = nodes.objectNode();
+                error.put("name", "BadConnectionError");
+                error.put("message", "Connection closed before response");
+                call(name, (Ack) objects[1], error, null);
+            }
+        }
+    }
+
+    /**
+     * Completes a request future directly from the reading thread
+     */
+    private static class FutureAck implements Ack {
+
+        final AckFuture future;
+
+        FutureAck(AckFuture future) {
+            this.future = future;
+        }
+
+        public void call(String name, JsonNode error, JsonNode data) {
+            future.complete(error, data);
+        }
     }
 
     private Ack ack(final Long cid) {
@@ -398,11 +1415,7 @@ public class Socket extends Emitter {
             public void call(final String channel, final JsonNode error, final JsonNode data) {
                 EventThread.exec(new Runnable() {
                     public void run() {
-                        ObjectNode object = mapper.createObjectNode();
-                        object.set("error", error);
-                        object.set("data", data);
-                        object.put("rid", cid);
-                        send(object);
+                        sendResponse(cid, error, data);
                     }
                 });
             }
@@ -428,27 +1441,457 @@ public class Socket extends Emitter {
         return headers;
     }
 
+    private WebSocketAdapter getHandshakeTracker() {
+        return new WebSocketAdapter() {
+
+            @Override
+            public void onSendingHandshake(WebSocket websocket, String requestLine, List<String[]> headers) {
+                // TCP and TLS are up, the opening handshake request is about to be sent
+                HandshakeTimings timings = handshakes.get(websocket);
+                if (timings != null) {
+                    timings.onTransportReady(websocket.getSocket());
+                    if (timings.isSecure()) {
+                        getConnectionContext().recordTlsHandshake(timings.isSessionResumed());
+                    }
+                }
+            }
+
+            @Override
+            public void onConnected(WebSocket websocket, Map<String, List<String>> headers) {
+                HandshakeTimings timings = handshakes.get(websocket);
+                if (timings != null) {
+                    timings.onUpgraded();
+                }
+            }
+
+            @Override
+            public void onConnectError(WebSocket websocket, WebSocketException exception) {
+                handshakes.remove(websocket);
+            }
+        };
+    }
+
+    private WebSocket createWebSocket(String url) throws IOException {
+        long dnsTime = -1;
+        if (factory.getProxySettings().getHost() == null) {
+            try {
+                dnsTime = getConnectionContext().resolve(url);
+            } catch (UnknownHostException e) {
+                // Reported by the connect attempt
+                LOGGER.log(Level.FINE, "Unable to resolve " + url, e);
+            }
+        }
+
+        factory.setConnectionTimeout(connectionTimeout);
+        WebSocket webSocket = factory.createSocket(url);
+        synchronized (this) {
+            webSocket.setFrameQueueSize(laneFrameQueueSize);
+        }
+        handshakes.put(webSocket, new HandshakeTimings(url, dnsTime));
+        // Runs before the adapter, so the opening handshake time is taken before the socketcluster handshake is sent
+        webSocket.addListener(handshakeTracker);
+
+        if (compressionPolicy != null) {
+            webSocket.addExtension(compressionPolicy.toExtension());
+        }
+
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            webSocket.addHeader(entry.getKey(), entry.getValue());
+        }
+
+        webSocket.addListener(adapter);
+        return webSocket;
+    }
+
     private void setupConnection() {
+        currentEndpoint = endpoints.getRanked().get(0);
         try {
-            factory.setConnectionTimeout(connectionTimeout);
-            ws = factory.createSocket(URL);
+            ws = createWebSocket(currentEndpoint.getUrl());
         } catch (IOException e) {
             e.printStackTrace();
         }
+        connectStartTime = System.nanoTime();
+    }
 
-        if (perMessageDeflate) {
-            ws.addExtension(WebSocketExtension.PERMESSAGE_DEFLATE);
+    private boolean isCompressionAgreed(WebSocket webSocket) {
+        // Null when the server answered without Sec-WebSocket-Extensions
+        if (compression == null || webSocket.getAgreedExtensions() == null) {
+            return false;
         }
-        ws.addExtension("client_max_window_bits");
+        for (WebSocketExtension extension : webSocket.getAgreedExtensions()) {
+            if (WebSocketExtension.PERMESSAGE_DEFLATE.equals(extension.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        for (Map.Entry<String, String> entry : headers.entrySet()) {
-            ws.addHeader(entry.getKey(), entry.getValue());
+    private synchronized Migration getMigration() {
+        return migration;
+    }
+
+    /**
+     * Make-before-break move to a new connection: connect, authenticate and subscribe it, switch to it, then drain
+     * the previous connection until its close completes
+     */
+    private class Migration {
+
+        private final EndpointSelector.Endpoint endpoint;
+        private final OverlapDeduplicator deduplicator = new OverlapDeduplicator(65536);
+        private final List<Long> subscribeCids = new ArrayList<>();
+        private volatile WebSocket target;
+        private volatile WebSocket previous;
+        private volatile HandshakeTimings timings;
+        private TimerTask timeoutTask;
+        private int pendingSubscriptions;
+        private boolean switched;
+        private volatile long targetPingTimeout;
+
+        Migration(EndpointSelector.Endpoint endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        void start() {
+            timeoutTask = new TimerTask() {
+                @Override
+                public void run() {
+                    abort(new TimeoutException("Migration to " + endpoint.getUrl() + " timed out"));
+                }
+            };
+            getAckTimer().schedule(timeoutTask, connectionTimeout + ackTimeout);
+
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        target = createWebSocket(endpoint.getUrl());
+                        target.connect();
+                    } catch (IOException | WebSocketException e) {
+                        connectFailed(target, endpoint);
+                        abort(e);
+                    }
+                }
+            }, "Migration");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        boolean isTarget(WebSocket webSocket) {
+            return webSocket == target;
+        }
+
+        boolean isParticipant(WebSocket webSocket) {
+            return webSocket == target || webSocket == previous;
+        }
+
+        /**
+         * @return false if the publication was already dispatched from the other connection
+         */
+        boolean accept(WebSocket webSocket, String channel, JsonNode data) {
+            return deduplicator.accept(webSocket == target ? 1 : 0, channel, data);
+        }
+
+        void onConnected(HandshakeTimings timings) {
+            this.timings = timings;
+            if (timings != null) {
+                endpoint.recordHandshake(timings.getTransportTime() + timings.getUpgradeTime());
+            }
+            // The counter is shared with the current connection, so cids stay unique across both
+            sendHandshake(target, counter.getAndIncrement());
+        }
+
+        /**
+         * @param pingTimeout - pingTimeout sent by the target's server, 0 if none
+         */
+        void onAuthenticated(long pingTimeout) {
+            targetPingTimeout = pingTimeout;
+            // With a subscription hub only the channels owned upstream, including ones no longer subscribed locally
+            List<String> subscribing = new ArrayList<>();
+            SubscriptionHub hub = subscriptionHub;
+            if (hub == null) {
+                for (Channel channel : channels) {
+                    subscribing.add(channel.getChannelName());
+                }
+            } else {
+                subscribing.addAll(hub.getOwnedChannels(Socket.this));
+            }
+            synchronized (this) {
+                pendingSubscriptions = subscribing.size();
+            }
+            if (subscribing.isEmpty()) {
+                switchOver();
+                return;
+            }
+
+            Ack subscribed = new Ack() {
+                public void call(String name, JsonNode error, JsonNode data) {
+                    if (error != null && !error.isNull()) {
+                        abort(new IOException("Unable to subscribe to " + name + ": " + error));
+                        return;
+                    }
+                    deduplicator.start(name);
+                    boolean complete;
+                    synchronized (Migration.this) {
+                        complete = --pendingSubscriptions == 0;
+                    }
+                    if (complete) {
+                        switchOver();
+                    }
+                }
+            };
+            for (String channel : subscribing) {
+                long cid = counter.getAndIncrement();
+                synchronized (this) {
+                    subscribeCids.add(cid);
+                }
+                acks.put(cid, getAckObject(channel, subscribed, target));
+                sendSubscribe(target, channel, cid);
+            }
+        }
+
+        private void switchOver() {
+            WebSocket old;
+            synchronized (Socket.this) {
+                if (migration != this) {
+                    return;
+                }
+                synchronized (this) {
+                    switched = true;
+                }
+                old = ws;
+                previous = old;
+                synchronized (sendLock) {
+                    ws = target;
+                    compressionAgreed = isCompressionAgreed(target);
+                }
+                currentEndpoint = endpoint;
+                handshakeTimings = timings;
+            }
+            timeoutTask.cancel();
+
+            long timeout = pingTimeout;
+            if (timeout == 0) {
+                // As on authentication, the previous connection's value if the target's server sent none
+                if (targetPingTimeout > 0) {
+                    serverPingTimeout = targetPingTimeout;
+                }
+                timeout = serverPingTimeout;
+            }
+            heartbeat.start(target, Math.max(0, timeout), pingInterval);
+            // Frames still arriving on the previous connection are dispatched until its close completes
+            old.disconnect(WebSocketCloseCode.NORMAL, "Migrated");
+            LOGGER.info("Migrated to " + endpoint.getUrl());
+            if (migrationListener != null) {
+                migrationListener.onMigrated(Socket.this, endpoint.getUrl());
+            }
+        }
+
+        void onDisconnected(WebSocket webSocket) {
+            if (webSocket == target) {
+                abort(new IOException("Connection to " + endpoint.getUrl() + " closed during migration"));
+            } else if (webSocket == previous) {
+                synchronized (Socket.this) {
+                    if (migration == this) {
+                        migration = null;
+                    }
+                }
+                // Responses to requests still sent on the previous connection won't arrive anymore
+                failPendingAcks(previous);
+                LOGGER.info("Suppressed " + deduplicator.getSuppressed() + " duplicate publications during migration");
+            }
+        }
+
+        void abort(Exception cause) {
+            synchronized (Socket.this) {
+                if (migration != this) {
+                    return;
+                }
+                synchronized (this) {
+                    if (switched) {
+                        return;
+                    }
+                }
+                migration = null;
+            }
+            timeoutTask.cancel();
+            synchronized (this) {
+                for (Long cid : subscribeCids) {
+                    acks.remove(cid);
+                }
+            }
+            if (target != null) {
+                target.disconnect(WebSocketCloseCode.NORMAL, "Migration failed");
+            }
+
+            LOGGER.log(Level.WARNING, "Migration to " + endpoint.getUrl() + " failed", cause);
+            if (migrationListener != null) {
+                migrationListener.onMigrationFailed(Socket.this, endpoint.getUrl(), cause);
+            }
+        }
+    }
+
+    private void connectFailed(WebSocket webSocket, EndpointSelector.Endpoint endpoint) {
+        handshakes.remove(webSocket);
+        if (endpoint != null) {
+            endpoint.recordFailure();
+        }
+    }
+
+    /**
+     * Decides whether an opened connection becomes the socket's connection and records its handshake time
+     */
+    private boolean claimConnection(WebSocket websocket) {
+        ConnectRace race;
+        synchronized (this) {
+            race = this.race;
+        }
+
+        if (race != null && race.isCandidate(websocket)) {
+            EndpointSelector.Endpoint endpoint = race.claim(websocket);
+            if (endpoint == null) {
+                return false;
+            }
+            ws = websocket;
+            currentEndpoint = endpoint;
+            return true;
+        }
+
+        if (websocket != ws) {
+            return false;
+        }
+        currentEndpoint.recordHandshake(System.nanoTime() - connectStartTime);
+        return true;
+    }
+
+    private void connectHedged(List<EndpointSelector.Endpoint> ranked) {
+        int parallelism = Math.min(hedgeParallelism, ranked.size());
+        ConnectRace race = new ConnectRace();
+        synchronized (this) {
+            this.race = race;
+        }
+
+        for (int i = 0; i < parallelism && !race.isDecided(); i++) {
+            EndpointSelector.Endpoint endpoint = ranked.get(i);
+            try {
+                race.start(createWebSocket(endpoint.getUrl()), endpoint);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to create connection to " + endpoint.getUrl(), e);
+                endpoint.recordFailure();
+                continue;
+            }
+            if (hedgeDelay > 0 && i + 1 < parallelism) {
+                race.await(hedgeDelay);
+            }
+        }
+        race.await(0);
+
+        synchronized (this) {
+            this.race = null;
+        }
+        if (!race.hasWinner()) {
+            listener.onConnectError(Socket.this, race.getLastError());
+            reconnect();
+        }
+    }
+
+    /**
+     * Connection attempts to several end-points, the first one completing the opening handshake wins
+     */
+    private class ConnectRace {
+
+        private final Map<WebSocket, EndpointSelector.Endpoint> candidates = new HashMap<>();
+        private final Map<WebSocket, Long> startTimes = new HashMap<>();
+        private WebSocket winner;
+        private int pending;
+        private WebSocketException lastError =
+                new WebSocketException(WebSocketError.SOCKET_CONNECT_ERROR, "No end-point could be connected");
+
+        synchronized void start(final WebSocket candidate, final EndpointSelector.Endpoint endpoint) {
+            candidates.put(candidate, endpoint);
+            startTimes.put(candidate, System.nanoTime());
+            pending++;
+
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        candidate.connect();
+                    } catch (WebSocketException e) {
+                        connectFailed(candidate, endpoint);
+                        failed(e);
+                    }
+                }
+            }, "HedgedConnect");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        synchronized boolean isCandidate(WebSocket webSocket) {
+            return candidates.containsKey(webSocket);
+        }
+
+        /**
+         * @return end-point of the candidate if it won the race, null if another candidate was first
+         */
+        synchronized EndpointSelector.Endpoint claim(WebSocket candidate) {
+            EndpointSelector.Endpoint endpoint = candidates.get(candidate);
+            endpoint.recordHandshake(System.nanoTime() - startTimes.get(candidate));
+            pending--;
+            notifyAll();
+            if (winner != null) {
+                return null;
+            }
+            winner = candidate;
+            return endpoint;
+        }
+
+        private synchronized void failed(WebSocketException e) {
+            pending--;
+            lastError = e;
+            notifyAll();
+        }
+
+        synchronized boolean isDecided() {
+            return winner != null || pending == 0;
+        }
+
+        synchronized boolean hasWinner() {
+            return winner != null;
+        }
+
+        synchronized WebSocketException getLastError() {
+            return lastError;
         }
 
-        ws.addListener(adapter);
+        /**
+         * Waits until a candidate won or all failed
+         * @param millis - maximum time to wait, 0 to wait until decided
+         */
+        synchronized void await(long millis) {
+            long deadline = System.currentTimeMillis() + millis;
+            boolean interrupted = false;
+            while (!isDecided()) {
+                long remaining = millis == 0 ? 0 : deadline - System.currentTimeMillis();
+                if (millis != 0 && remaining <= 0) {
+                    break;
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     public void connect() {
+        List<EndpointSelector.Endpoint> ranked = endpoints.getRanked();
+        if (hedgeParallelism > 1 && ranked.size() > 1) {
+            connectHedged(ranked);
+            return;
+        }
+
         setupConnection();
         try {
             ws.connect();
@@ -486,6 +1929,7 @@ public class Socket extends Emitter {
             }
         } catch (WebSocketException e) {
             // Failed to establish a WebSocket connection.
+            connectFailed(ws, currentEndpoint);
             listener.onConnectError(Socket.this, e);
             reconnect();
         }
@@ -493,6 +1937,17 @@ public class Socket extends Emitter {
     }
 
     public void connectAsync() {
+        if (hedgeParallelism > 1 && endpoints.getEndpoints().size() > 1) {
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    connect();
+                }
+            }, "HedgedConnect");
+            thread.setDaemon(true);
+            thread.start();
+            return;
+        }
+
         setupConnection();
         ws.connectAsynchronously();
     }
@@ -509,6 +1964,30 @@ public class Socket extends Emitter {
             return;
         }
 
+        // Fail over to another end-point right away instead of waiting for the dead one, but only once per end-point
+        // until a connection stays up for a reconnect interval, so end-points dropping every connection back off
+        long delay = strategy.getReconnectInterval();
+        synchronized (this) {
+            long connected = connectedTime;
+            connectedTime = 0;
+            if (connected != 0 && System.nanoTime() - connected >= TimeUnit.MILLISECONDS.toNanos(delay)) {
+                immediateFailovers = 0;
+            }
+            if (immediateFailovers < endpoints.getEndpoints().size() - 1
+                    && endpoints.hasHealthyAlternative(currentEndpoint)) {
+                immediateFailovers++;
+                delay = 0;
+            }
+        }
+        if (delay > 0) {
+            // Resolve while waiting, so the reconnect starts with the TCP connect
+            List<String> urls = new ArrayList<>();
+            for (EndpointSelector.Endpoint endpoint : endpoints.getEndpoints()) {
+                urls.add(endpoint.getUrl());
+            }
+            getConnectionContext().prefetch(urls);
+        }
+
         final Timer timer = new Timer();
         timer.schedule(new TimerTask() {
             @Override
@@ -522,10 +2001,20 @@ public class Socket extends Emitter {
                 timer.cancel();
                 timer.purge();
             }
-        }, strategy.getReconnectInterval());
+        }, delay);
     }
 
     public void disconnect() {
+        Migration migration = getMigration();
+        if (migration != null) {
+            migration.abort(new IOException("Socket disconnected"));
+        }
+        // Its channels rejoin the hub when subscribed again after the next connect
+        SubscriptionHub hub = subscriptionHub;
+        if (hub != null) {
+            hub.leave(this);
+        }
+        heartbeat.stop();
         if (ws != null) {
             ws.disconnect();
         }
@@ -561,6 +2050,7 @@ public class Socket extends Emitter {
     public class Channel {
 
         String channelName;
+        private ChannelPublisher publisher;
 
         public String getChannelName() {
             return channelName;
@@ -571,15 +2061,74 @@ public class Socket extends Emitter {
         }
 
         public void subscribe() {
-            Socket.this.subscribe(channelName);
+            SubscriptionHub hub = subscriptionHub;
+            if (hub != null) {
+                hub.subscribe(Socket.this, channelName, null);
+            } else {
+                Socket.this.subscribe(channelName);
+            }
         }
 
         public void subscribe(Ack ack) {
-            Socket.this.subscribe(channelName, ack);
+            SubscriptionHub hub = subscriptionHub;
+            if (hub != null) {
+                hub.subscribe(Socket.this, channelName, ack);
+            } else {
+                Socket.this.subscribe(channelName, ack);
+            }
         }
 
         public void onMessage(Listener listener) {
             Socket.this.onSubscribe(channelName, listener);
+
+            LastValueCache cache = lastValueCache;
+            if (replayOnAttach && cache != null) {
+                JsonNode lastValue = cache.get(channelName);
+                if (lastValue != null) {
+                    listener.call(channelName, lastValue);
+                }
+            }
+        }
+
+        /**
+         * @return last message received on this channel, null if none was received or the last value cache is disabled
+         */
+        public JsonNode getLastValue() {
+            LastValueCache cache = lastValueCache;
+            return cache == null ? null : cache.get(channelName);
+        }
+
+        /**
+         * Delivers only the newest message not yet handled by the listener, which is called on a shared thread pool
+         */
+        public ConflatingListener onMessageConflated(Listener listener) {
+            return onMessageConflated(listener, null, 1, null);
+        }
+
+        /**
+         * Delivers only the newest message per value of {@code keyField} not yet handled by the listener
+         * @param keyField - payload field whose value keys the conflation, null to keep only the newest message
+         * @param maxKeys - maximum number of pending keys, the oldest pending key is dropped beyond it
+         * @param executor - executor the listener is called on, null for a shared thread pool
+         */
+        public ConflatingListener onMessageConflated(Listener listener, String keyField, int maxKeys, Executor executor) {
+            ConflatingListener conflatingListener = new ConflatingListener(listener, keyField, maxKeys, executor);
+            onMessage(conflatingListener);
+            return conflatingListener;
+        }
+
+        /**
+         * Exposes the channel messages as a Reactive Streams Publisher, replacing the channel's message listener.
+         * The publisher completes its subscribers when the channel is unsubscribed.
+         * @param bufferSize - maximum number of messages buffered per subscriber beyond its demand
+         * @param overflowStrategy - handling of messages arriving at a full buffer
+         */
+        public synchronized ChannelPublisher toPublisher(int bufferSize, ChannelPublisher.OverflowStrategy overflowStrategy) {
+            if (publisher == null) {
+                publisher = new ChannelPublisher(channelName, bufferSize, overflowStrategy);
+                onMessage(publisher);
+            }
+            return publisher;
         }
 
         public void publish(Object data) {
@@ -591,13 +2140,49 @@ public class Socket extends Emitter {
         }
 
         public void unsubscribe() {
-            Socket.this.unsubscribe(channelName);
+            SubscriptionHub hub = subscriptionHub;
+            if (hub != null) {
+                hub.unsubscribe(Socket.this, channelName, null);
+            } else {
+                Socket.this.unsubscribe(channelName);
+            }
             channels.remove(this);
+            onUnsubscribed();
         }
 
         public void unsubscribe(Ack ack) {
-            Socket.this.unsubscribe(channelName, ack);
+            SubscriptionHub hub = subscriptionHub;
+            if (hub != null) {
+                hub.unsubscribe(Socket.this, channelName, ack);
+            } else {
+                Socket.this.unsubscribe(channelName, ack);
+            }
             channels.remove(this);
+            onUnsubscribed();
+        }
+
+        private synchronized void onUnsubscribed() {
+            LastValueCache cache = lastValueCache;
+            if (cache != null) {
+                cache.remove(channelName);
+            }
+
+            if (publisher != null) {
+                publisher.complete();
+                publisher = null;
+            }
+        }
+    }
+
+    /**
+     * Frame handed to permessage-deflate, remembering its size before compression
+     */
+    private static class CompressibleFrame extends WebSocketFrame {
+
+        final int originalLength;
+
+        CompressibleFrame(int originalLength) {
+            this.originalLength = originalLength;
         }
     }
 }
@@ -0,0 +1,292 @@
+package io.github.sac;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shares channel subscriptions among the sockets of a process connected to the same cluster, see
+ * {@link Socket#setSubscriptionHub}. Subscriptions are counted per channel and only one socket, the owner, subscribes
+ * a channel upstream. Its messages are decoded once and delivered to every socket which subscribed the channel.
+ * The upstream subscription is dropped once the last socket unsubscribes, and moved to another connected socket when
+ * the owner disconnects.
+ * <p>
+ * Listeners of all sockets are called on the thread of the owner and share the same message, which they must not
+ * modify.
+ */
+public class SubscriptionHub {
+
+    private final static Logger LOGGER = Logger.getLogger(SubscriptionHub.class.getName());
+
+    private static SubscriptionHub defaultHub;
+
+    private static class Subscription {
+        final List<Socket> members = new CopyOnWriteArrayList<>();
+        final List<Ack> pending = new ArrayList<>();
+        volatile Socket owner;
+        boolean confirmed;
+    }
+
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicLong upstreamSubscribes = new AtomicLong();
+    private final AtomicLong handovers = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    /**
+     * @return hub shared by the whole process, its sockets have to be connected to the same cluster
+     */
+    public static synchronized SubscriptionHub getDefault() {
+        if (defaultHub == null) {
+            defaultHub = new SubscriptionHub();
+        }
+        return defaultHub;
+    }
+
+    /**
+     * @return channels subscribed upstream
+     */
+    public int getUpstreamCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * @return subscriptions of all sockets, each counted once per channel
+     */
+    public int getLocalCount() {
+        int count = 0;
+        for (Subscription subscription : subscriptions.values()) {
+            count += subscription.members.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return subscribe requests sent upstream, including handovers
+     */
+    public long getUpstreamSubscribeCount() {
+        return upstreamSubscribes.get();
+    }
+
+    /**
+     * @return upstream subscriptions moved to another socket after their owner disconnected
+     */
+    public long getHandoverCount() {
+        return handovers.get();
+    }
+
+    /**
+     * @return messages delivered to sockets, one per subscribed socket
+     */
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /**
+     * @return messages dropped as they arrived at a socket not owning the channel, e.g. during a handover
+     */
+    public long getSuppressedCount() {
+        return suppressed.get();
+    }
+
+    /**
+     * @param ack - called once the channel is subscribed upstream, may be null
+     */
+    void subscribe(Socket socket, String channel, Ack ack) {
+        boolean subscribed;
+        synchronized (this) {
+            Subscription subscription = subscriptions.get(channel);
+            if (subscription == null) {
+                subscription = new Subscription();
+                subscriptions.put(channel, subscription);
+            }
+            if (!subscription.members.contains(socket)) {
+                subscription.members.add(socket);
+            }
+
+            Socket owner = subscription.owner;
+            if (owner == null || (owner != socket && !owner.isconnected())) {
+                if (ack != null) {
+                    subscription.pending.add(ack);
+                }
+                // Sockets not yet connected subscribe their channels again once authenticated
+                if (socket.isconnected()) {
+                    subscribeUpstream(socket, channel, subscription);
+                }
+                return;
+            }
+            // Also when the socket owns the channel already, its upstream subscribe is sent or confirmed
+            subscribed = subscription.confirmed;
+            if (!subscribed && ack != null) {
+                subscription.pending.add(ack);
+            }
+        }
+        if (subscribed && ack != null) {
+            ack.call(channel, null, null);
+        }
+    }
+
+    /**
+     * @param ack - called once the channel is unsubscribed, upstream if it was the last subscription, may be null
+     */
+    void unsubscribe(Socket socket, String channel, Ack ack) {
+        Socket owner;
+        synchronized (this) {
+            Subscription subscription = subscriptions.get(channel);
+            if (subscription == null) {
+                owner = socket;
+            } else {
+                subscription.members.remove(socket);
+                if (!subscription.members.isEmpty()) {
+                    owner = null;
+                } else {
+                    subscriptions.remove(channel);
+                    owner = subscription.owner;
+                }
+            }
+        }
+
+        if (owner == socket) {
+            socket.unsubscribeUpstream(channel, ack);
+            return;
+        }
+        if (owner != null && owner.isconnected()) {
+            owner.unsubscribeUpstream(channel, null);
+        }
+        if (ack != null) {
+            ack.call(channel, null, null);
+        }
+    }
+
+    /**
+     * Delivers a message received by {@code socket} to all sockets subscribed to the channel
+     * @return false if the channel isn't shared by the hub and has to be delivered by the socket itself
+     */
+    boolean publish(Socket socket, String channel, JsonNode data, int size) {
+        Subscription subscription = subscriptions.get(channel);
+        if (subscription == null) {
+            return false;
+        }
+        if (subscription.owner != socket) {
+            suppressed.incrementAndGet();
+            return true;
+        }
+
+        for (Socket member : subscription.members) {
+            try {
+                member.deliverPublish(channel, data, size);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Listener of " + channel + " failed", e);
+            }
+            delivered.incrementAndGet();
+        }
+        return true;
+    }
+
+    /**
+     * Moves the upstream subscriptions of a disconnected socket to connected sockets subscribed to the same channels.
+     * Channels without one are subscribed again by the first of their sockets to authenticate.
+     */
+    synchronized void onDisconnected(Socket socket) {
+        for (Map.Entry<String, Subscription> entry : subscriptions.entrySet()) {
+            Subscription subscription = entry.getValue();
+            if (subscription.owner != socket) {
+                continue;
+            }
+            subscription.owner = null;
+            subscription.confirmed = false;
+            for (Socket member : subscription.members) {
+                if (member != socket && member.isconnected()) {
+                    handovers.incrementAndGet();
+                    subscribeUpstream(member, entry.getKey(), subscription);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops all subscriptions of a socket which is closed for good
+     */
+    void leave(Socket socket) {
+        List<String> unused = new ArrayList<>();
+        List<Socket> owners = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, Subscription> entry : subscriptions.entrySet()) {
+                Subscription subscription = entry.getValue();
+                subscription.members.remove(socket);
+                if (subscription.members.isEmpty()) {
+                    subscriptions.remove(entry.getKey());
+                    if (subscription.owner != null && subscription.owner != socket) {
+                        unused.add(entry.getKey());
+                        owners.add(subscription.owner);
+                    }
+                }
+            }
+            onDisconnected(socket);
+        }
+        for (int i = 0; i < unused.size(); i++) {
+            if (owners.get(i).isconnected()) {
+                owners.get(i).unsubscribeUpstream(unused.get(i), null);
+            }
+        }
+    }
+
+    /**
+     * @return channels the socket has to keep subscribed upstream, e.g. when moving to another connection
+     */
+    synchronized List<String> getOwnedChannels(Socket socket) {
+        List<String> owned = new ArrayList<>();
+        for (Map.Entry<String, Subscription> entry : subscriptions.entrySet()) {
+            if (entry.getValue().owner == socket) {
+                owned.add(entry.getKey());
+            }
+        }
+        return owned;
+    }
+
+    private void subscribeUpstream(final Socket owner, String channel, final Subscription subscription) {
+        subscription.owner = owner;
+        subscription.confirmed = false;
+        upstreamSubscribes.incrementAndGet();
+        owner.subscribeUpstream(channel, new Ack() {
+            public void call(String name, JsonNode error, JsonNode data) {
+                onSubscribed(owner, subscription, name, error, data);
+            }
+        });
+    }
+
+    private void onSubscribed(Socket owner, Subscription subscription, String channel, JsonNode error, JsonNode data) {
+        List<Ack> completed;
+        synchronized (this) {
+            if (subscription.owner != owner) {
+                // Handed over in the meantime, the acks are completed by the new owner
+                return;
+            }
+            boolean failed = error != null && !error.isNull();
+            if (failed) {
+                LOGGER.warning("Unable to subscribe to " + channel + ": " + error);
+                subscription.owner = null;
+            }
+            subscription.confirmed = !failed;
+            completed = new ArrayList<>(subscription.pending);
+            subscription.pending.clear();
+        }
+        for (Ack ack : completed) {
+            ack.call(channel, error, data);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SubscriptionHub{upstream=" + getUpstreamCount() + ", local=" + getLocalCount() + ", delivered="
+                + delivered + ", suppressed=" + suppressed + ", handovers=" + handovers + "}";
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.sac.codec;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable {@link OutputStream} over a {@link ByteBuffer} which can be reset and reused between messages.
+ * Not thread safe.
+ */
+public class ByteBufferOutputStream extends OutputStream {
+
+    /**
+     * Buffers grown beyond this size are dropped on {@link #reset()}, so that a single large message
+     * does not pin its buffer for the lifetime of the stream.
+     */
+    private static final int DEFAULT_MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+    private final ByteBuffer initial;
+    private final int maxRetainedCapacity;
+    private ByteBuffer buffer;
+
+    public ByteBufferOutputStream(int initialCapacity) {
+        this(ByteBuffer.allocate(initialCapacity));
+    }
+
+    /**
+     * @param buffer caller-supplied buffer which is written from position 0 and reused after every {@link #reset()}
+     */
+    public ByteBufferOutputStream(ByteBuffer buffer) {
+        this(buffer, Math.max(buffer.capacity(), DEFAULT_MAX_RETAINED_CAPACITY));
+    }
+
+    public ByteBufferOutputStream(ByteBuffer buffer, int maxRetainedCapacity) {
+        buffer.clear();
+        this.initial = buffer;
+        this.buffer = buffer;
+        this.maxRetainedCapacity = maxRetainedCapacity;
+    }
+
+    @Override
+    public void write(int b) {
+        ensureRemaining(1);
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureRemaining(len);
+        buffer.put(b, off, len);
+    }
+
+    /**
+     * Writes the remaining bytes of {@code src} without modifying its position
+     */
+    public void write(ByteBuffer src) {
+        ensureRemaining(src.remaining());
+        buffer.put(src.duplicate());
+    }
+
+    private void ensureRemaining(int length) {
+        if (buffer.remaining() >= length) {
+            return;
+        }
+        int capacity = Math.max(buffer.capacity() * 2, buffer.position() + length);
+        ByteBuffer grown = buffer.isDirect() ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+    }
+
+    public int size() {
+        return buffer.position();
+    }
+
+    /**
+     * Discards the written bytes and keeps the current buffer for reuse, unless it has grown past the retained limit
+     */
+    public void reset() {
+        if (buffer != initial && buffer.capacity() > maxRetainedCapacity) {
+            buffer = initial;
+        }
+        buffer.clear();
+    }
+
+    /**
+     * @return read-only view of the written bytes, valid until the next write or {@link #reset()}
+     */
+    public ByteBuffer getBuffer() {
+        ByteBuffer view = buffer.duplicate();
+        view.flip();
+        return view.asReadOnlyBuffer();
+    }
+
+    public byte[] toByteArray() {
+        if (buffer.hasArray()) {
+            int offset = buffer.arrayOffset();
+            return Arrays.copyOfRange(buffer.array(), offset, offset + buffer.position());
+        }
+        byte[] bytes = new byte[buffer.position()];
+        ByteBuffer view = buffer.duplicate();
+        view.flip();
+        view.get(bytes);
+        return bytes;
+    }
+}
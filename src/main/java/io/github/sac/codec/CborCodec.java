@@ -0,0 +1,16 @@
+package io.github.sac.codec;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+/**
+ * CBOR codec using the same compressed envelope shapes as sc-codec-min-bin
+ * <p>
+ * Needs the optional jackson-dataformat-cbor dependency.
+ */
+public class CborCodec extends EnvelopeCompressingCodec {
+    private final static CBORFactory factory = new CBORFactory();
+
+    public CborCodec() {
+        super(factory);
+    }
+}
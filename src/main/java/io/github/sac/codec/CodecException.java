@@ -0,0 +1,19 @@
+package io.github.sac.codec;
+
+import java.io.IOException;
+
+/**
+ * Thrown by {@link SocketClusterBufferCodec} implementations when a message cannot be encoded or decoded.
+ */
+public class CodecException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CodecException(String message) {
+        super(message);
+    }
+
+    public CodecException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,266 @@
+package io.github.sac.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.logging.Logger;
+
+/**
+ * Base for binary codecs using the sc-codec-min-bin envelope compression, which maps publish, emit and response
+ * envelopes to the compact {@code p}, {@code e} and {@code r} array shapes before they are written
+ * with the format specific {@link JsonFactory}. Trees are read and written with the streaming API, see
+ * {@link JsonTrees}.
+ */
+public abstract class EnvelopeCompressingCodec implements SocketClusterBufferCodec {
+    private final static Logger LOGGER = Logger.getLogger(SocketClusterCodec.class.getName());
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+    private final JsonFactory factory;
+
+    protected EnvelopeCompressingCodec(JsonFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @param mapper - only its factory is used
+     */
+    protected EnvelopeCompressingCodec(ObjectMapper mapper) {
+        this(mapper.getFactory());
+    }
+
+    @Override
+    public byte[] encode(JsonNode data) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            write(out, compress(data));
+            return out.toByteArray();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        LOGGER.info("Unable to encode data");
+        return null;
+    }
+
+    @Override
+    public void encode(JsonNode data, OutputStream out) throws CodecException {
+        try {
+            write(out, compress(data));
+        } catch (CodecException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CodecException("Unable to encode data", e);
+        }
+    }
+
+    private void write(OutputStream out, JsonNode data) throws IOException {
+        JsonGenerator gen = factory.createGenerator(out);
+        // The stream belongs to the caller, closing the generator only flushes it
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        try {
+            JsonTrees.writeTree(gen, data);
+        } finally {
+            gen.close();
+        }
+    }
+
+    private JsonNode read(byte[] data, int offset, int length) throws IOException {
+        JsonParser parser = factory.createParser(data, offset, length);
+        try {
+            return JsonTrees.readTree(parser);
+        } finally {
+            parser.close();
+        }
+    }
+
+    private JsonNode compress(JsonNode data) throws CodecException {
+        if (data.isValueNode()) {
+            return data;
+        }
+
+        if (data.isObject()) {
+            ObjectNode encodeObject = (ObjectNode) data;
+            ObjectNode compressed = NODES.objectNode();
+
+            compressPublish(encodeObject, compressed);
+            compressEmit(encodeObject, compressed);
+            compressResponse(encodeObject, compressed);
+
+            return compressed;
+        }
+
+        throw new CodecException("Unable to encode data of type " + data.getNodeType());
+    }
+
+    private void compressResponse(ObjectNode object, ObjectNode compressed) {
+        if (!object.has("rid") || object.get("rid").isNull()) {
+            return;
+        }
+
+        ArrayNode array = NODES.arrayNode()
+                .add(object.get("rid"))
+                .add(object.get("error"))
+                .add(object.get("data"));
+
+        compressed.set("r", array);
+
+        object.remove("rid");
+        object.remove("error");
+        object.remove("data");
+    }
+
+    private void compressPublish(ObjectNode object, ObjectNode compressed) {
+        if (!object.has("event") || !object.get("event").asText().equals("#publish")
+                || !object.has("data") || object.get("data").isNull()) {
+            return;
+        }
+
+        ObjectNode dataObject = (ObjectNode) object.get("data");
+
+        ArrayNode array = NODES.arrayNode();
+        array.add(dataObject.get("channel"));
+        array.add(dataObject.get("data"));
+
+        if (object.has("cid")) {
+            array.add(object.get("cid"));
+            object.remove("cid");
+        }
+
+        compressed.set("p", array);
+
+        object.remove("event");
+        object.remove("data");
+    }
+
+    private void compressEmit(ObjectNode object, ObjectNode compressed) {
+        if (!object.has("event") || object.get("event").isNull()) {
+            return;
+        }
+
+        ArrayNode array = NODES.arrayNode();
+        array.add(object.get("event"));
+        array.add(object.get("data"));
+
+        if (object.has("cid")) {
+            array.add(object.get("cid"));
+            object.remove("cid");
+        }
+
+        compressed.set("e", array);
+
+        object.remove("event");
+        object.remove("data");
+    }
+
+
+    @Override
+    public JsonNode decode(byte[] data) {
+        try {
+            return decompress(read(data, 0, data.length));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        LOGGER.info("Unable to decode data");
+        return null;
+    }
+
+    @Override
+    public JsonNode decode(ByteBuffer data) throws CodecException {
+        try {
+            JsonNode decoded;
+            if (data.hasArray()) {
+                decoded = read(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            } else {
+                byte[] bytes = new byte[data.remaining()];
+                data.duplicate().get(bytes);
+                decoded = read(bytes, 0, bytes.length);
+            }
+            return decompress(decoded);
+        } catch (CodecException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new CodecException("Unable to decode data", e);
+        }
+    }
+
+    private JsonNode decompress(JsonNode decoded) throws CodecException {
+        if (decoded == null) {
+            throw new CodecException("Unable to decode empty data");
+        }
+
+        if (decoded.isValueNode()) {
+            return decoded;
+        }
+
+        if (decoded.isObject()) {
+            ObjectNode decodeObject = (ObjectNode) decoded;
+            decompressEmit(decodeObject);
+            decompressPublish(decodeObject);
+            decompressResponse(decodeObject);
+
+            return decodeObject;
+        }
+
+        throw new CodecException("Unable to decode data of type " + decoded.getNodeType());
+    }
+
+    private void decompressResponse(ObjectNode object) {
+        if (!object.has("r") || object.get("r").isNull()) {
+            return;
+        }
+
+        ArrayNode array = (ArrayNode) object.get("r");
+
+        object.set("rid", array.get(0));
+        object.set("error", array.get(1));
+        object.set("data", array.get(2));
+
+        object.remove("r");
+    }
+
+    private void decompressPublish(ObjectNode object) {
+        if (!object.has("p") || object.get("p").isNull()) {
+            return;
+        }
+
+        ArrayNode array = (ArrayNode) object.get("p");
+
+        ObjectNode dataObject = NODES.objectNode();
+        dataObject.set("channel", array.get(0));
+        dataObject.set("data", array.get(1));
+
+        object.put("event", "#publish");
+        object.set("data", dataObject);
+
+        if (array.has(2)) {
+            object.set("cid", array.get(2));
+        }
+
+        object.remove("p");
+    }
+
+    private void decompressEmit(ObjectNode object) {
+        if (!object.has("e") || object.get("e").isNull()) {
+            return;
+        }
+
+        ArrayNode array = (ArrayNode) object.get("e");
+
+        object.set("event", array.get(0));
+        object.set("data", array.get(1));
+
+        if (array.has(2)) {
+            object.set("cid", array.get(2));
+        }
+
+        object.remove("e");
+    }
+}
@@ -0,0 +1,199 @@
+package io.github.sac.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Reads and writes {@link JsonNode} trees with the streaming parsers and generators of any format, without an
+ * {@link ObjectMapper}. Setting up a mapper dominates start up time, so one is only created once a POJO has to be
+ * written.
+ */
+public final class JsonTrees {
+
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private JsonTrees() {
+    }
+
+    private static class MapperHolder {
+        static final ObjectMapper MAPPER = new ObjectMapper();
+    }
+
+    /**
+     * Reads the value at the current token, or the next one if the parser wasn't advanced yet
+     * @return null if the input is empty
+     */
+    public static JsonNode readTree(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == null) {
+            token = parser.nextToken();
+            if (token == null) {
+                return null;
+            }
+        }
+        return readValue(parser, token);
+    }
+
+    private static JsonNode readValue(JsonParser parser, JsonToken token) throws IOException {
+        if (token == null) {
+            throw new JsonParseException(parser, "Unexpected end of input");
+        }
+        switch (token) {
+            case START_OBJECT:
+                ObjectNode object = NODES.objectNode();
+                while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    object.set(name, readValue(parser, parser.nextToken()));
+                }
+                if (token != JsonToken.END_OBJECT) {
+                    throw new JsonParseException(parser, "Unexpected " + token + " in object");
+                }
+                return object;
+            case START_ARRAY:
+                ArrayNode array = NODES.arrayNode();
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    array.add(readValue(parser, token));
+                }
+                return array;
+            case VALUE_STRING:
+                return NODES.textNode(parser.getText());
+            case VALUE_NUMBER_INT:
+                switch (parser.getNumberType()) {
+                    case INT:
+                        return NODES.numberNode(parser.getIntValue());
+                    case LONG:
+                        return NODES.numberNode(parser.getLongValue());
+                    default:
+                        return NODES.numberNode(parser.getBigIntegerValue());
+                }
+            case VALUE_NUMBER_FLOAT:
+                switch (parser.getNumberType()) {
+                    case BIG_DECIMAL:
+                        return NODES.numberNode(parser.getDecimalValue());
+                    case FLOAT:
+                        return NODES.numberNode(parser.getFloatValue());
+                    default:
+                        return NODES.numberNode(parser.getDoubleValue());
+                }
+            case VALUE_TRUE:
+                return NODES.booleanNode(true);
+            case VALUE_FALSE:
+                return NODES.booleanNode(false);
+            case VALUE_NULL:
+                return NODES.nullNode();
+            case VALUE_EMBEDDED_OBJECT:
+                // Binary formats report bin and extension values as embedded objects
+                Object value = parser.getEmbeddedObject();
+                if (value == null) {
+                    return NODES.nullNode();
+                }
+                if (value instanceof byte[]) {
+                    return NODES.binaryNode((byte[]) value);
+                }
+                if (value instanceof JsonNode) {
+                    return (JsonNode) value;
+                }
+                return NODES.pojoNode(value);
+            default:
+                throw new JsonParseException(parser, "Unexpected " + token);
+        }
+    }
+
+    public static void writeTree(JsonGenerator gen, JsonNode node) throws IOException {
+        switch (node.getNodeType()) {
+            case OBJECT:
+                gen.writeStartObject();
+                Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    gen.writeFieldName(field.getKey());
+                    writeTree(gen, field.getValue());
+                }
+                gen.writeEndObject();
+                break;
+            case ARRAY:
+                // Sized, so CBOR writes a definite length array
+                gen.writeStartArray(node.size());
+                for (JsonNode element : node) {
+                    writeTree(gen, element);
+                }
+                gen.writeEndArray();
+                break;
+            case STRING:
+                gen.writeString(node.textValue());
+                break;
+            case NUMBER:
+                switch (node.numberType()) {
+                    case INT:
+                        gen.writeNumber(node.intValue());
+                        break;
+                    case LONG:
+                        gen.writeNumber(node.longValue());
+                        break;
+                    case BIG_INTEGER:
+                        gen.writeNumber(node.bigIntegerValue());
+                        break;
+                    case FLOAT:
+                        gen.writeNumber(node.floatValue());
+                        break;
+                    case BIG_DECIMAL:
+                        gen.writeNumber(node.decimalValue());
+                        break;
+                    default:
+                        gen.writeNumber(node.doubleValue());
+                }
+                break;
+            case BOOLEAN:
+                gen.writeBoolean(node.booleanValue());
+                break;
+            case BINARY:
+                gen.writeBinary(node.binaryValue());
+                break;
+            case POJO:
+                writeObject(gen, ((POJONode) node).getPojo());
+                break;
+            default:
+                gen.writeNull();
+        }
+    }
+
+    /**
+     * Writes trees, strings, numbers, booleans and byte arrays directly, other objects are serialized
+     * by a shared {@link ObjectMapper} created on first use
+     */
+    public static void writeObject(JsonGenerator gen, Object value) throws IOException {
+        if (value == null) {
+            gen.writeNull();
+        } else if (value instanceof JsonNode) {
+            writeTree(gen, (JsonNode) value);
+        } else if (value instanceof String) {
+            gen.writeString((String) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            gen.writeNumber(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            gen.writeNumber((Long) value);
+        } else if (value instanceof Double) {
+            gen.writeNumber((Double) value);
+        } else if (value instanceof Float) {
+            gen.writeNumber((Float) value);
+        } else if (value instanceof Boolean) {
+            gen.writeBoolean((Boolean) value);
+        } else if (value instanceof byte[]) {
+            gen.writeBinary((byte[]) value);
+        } else {
+            MapperHolder.MAPPER.writeValue(gen, value);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.sac.codec;
+
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+/**
+ * Smile codec using the same compressed envelope shapes as sc-codec-min-bin.
+ * Shared field names and short string values are written as back-references, which pays off for payloads
+ * repeating the same keys and values within a message. Binary values are written raw instead of 7-bit encoded,
+ * which is safe as every message is framed by the websocket.
+ * <p>
+ * Needs the optional jackson-dataformat-smile dependency.
+ */
+public class SmileCodec extends EnvelopeCompressingCodec {
+    private final static SmileFactory factory = new SmileFactory()
+            .enable(SmileGenerator.Feature.CHECK_SHARED_NAMES)
+            .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+            .disable(SmileGenerator.Feature.ENCODE_BINARY_AS_7BIT);
+
+    public SmileCodec() {
+        super(factory);
+    }
+}
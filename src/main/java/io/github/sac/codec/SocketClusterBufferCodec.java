@@ -0,0 +1,25 @@
+package io.github.sac.codec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Codec that encodes into a caller-supplied stream and decodes from a buffer slice, so that the
+ * socket can reuse its encode buffers instead of allocating a new array per message.
+ * Failures are reported with {@link CodecException} instead of {@code null} results.
+ */
+public interface SocketClusterBufferCodec extends SocketClusterCodec {
+
+    /**
+     * Encodes {@code data} into {@code out}. Pass a {@link ByteBufferOutputStream} to encode into a pooled or
+     * caller-supplied {@link ByteBuffer}.
+     */
+    void encode(JsonNode data, OutputStream out) throws CodecException;
+
+    /**
+     * Decodes the remaining bytes of {@code data}. The buffer position is not modified.
+     */
+    JsonNode decode(ByteBuffer data) throws CodecException;
+}
@@ -0,0 +1,68 @@
+package io.github.sac.codec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Exposes a plain {@link SocketClusterCodec} through the {@link SocketClusterBufferCodec} interface,
+ * turning {@code null} results into {@link CodecException}s.
+ */
+public class SocketClusterCodecAdapter implements SocketClusterBufferCodec {
+
+    private final SocketClusterCodec codec;
+
+    private SocketClusterCodecAdapter(SocketClusterCodec codec) {
+        this.codec = codec;
+    }
+
+    public static SocketClusterBufferCodec adapt(SocketClusterCodec codec) {
+        if (codec instanceof SocketClusterBufferCodec) {
+            return (SocketClusterBufferCodec) codec;
+        }
+        return new SocketClusterCodecAdapter(codec);
+    }
+
+    @Override
+    public byte[] encode(JsonNode data) {
+        return codec.encode(data);
+    }
+
+    @Override
+    public JsonNode decode(byte[] data) {
+        return codec.decode(data);
+    }
+
+    @Override
+    public void encode(JsonNode data, OutputStream out) throws CodecException {
+        byte[] encoded = codec.encode(data);
+        if (encoded == null) {
+            throw new CodecException("Unable to encode data with " + codec.getClass().getName());
+        }
+        try {
+            out.write(encoded);
+        } catch (IOException e) {
+            throw new CodecException("Unable to write encoded data", e);
+        }
+    }
+
+    @Override
+    public JsonNode decode(ByteBuffer data) throws CodecException {
+        byte[] bytes;
+        if (data.hasArray() && data.arrayOffset() == 0 && data.position() == 0
+                && data.remaining() == data.array().length) {
+            bytes = data.array();
+        } else {
+            bytes = new byte[data.remaining()];
+            data.duplicate().get(bytes);
+        }
+
+        JsonNode decoded = codec.decode(bytes);
+        if (decoded == null) {
+            throw new CodecException("Unable to decode data with " + codec.getClass().getName());
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.sac;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConflatingListenerTest {
+
+    @Test
+    public void rejectedDrainIsScheduledAgainByTheNextMessage() {
+        final List<Integer> delivered = new ArrayList<>();
+        final boolean[] reject = {true};
+        Executor executor = new Executor() {
+            public void execute(Runnable command) {
+                if (reject[0]) {
+                    throw new RejectedExecutionException("Saturated");
+                }
+                command.run();
+            }
+        };
+        ConflatingListener listener = new ConflatingListener(new Emitter.Listener() {
+            public void call(String name, JsonNode data) {
+                delivered.add(data.asInt());
+            }
+        }, null, 1, executor);
+
+        listener.call("prices", JsonNodeFactory.instance.numberNode(1));
+        assertEquals(0, delivered.size());
+        assertEquals(1, listener.getPendingCount());
+
+        reject[0] = false;
+        listener.call("prices", JsonNodeFactory.instance.numberNode(2));
+        assertEquals(1, delivered.size());
+        assertEquals(2, (int) delivered.get(0));
+        assertEquals(0, listener.getPendingCount());
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.sac;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class HandlerProfilerTest {
+
+    private static SlowHandlerListener recording(final List<String> stalled) {
+        return new SlowHandlerListener() {
+            public void onSlowHandler(HandlerStats handler, long nanos) {
+            }
+
+            public void onHandlerStalled(HandlerStats handler, long elapsedNanos, Thread thread) {
+                stalled.add(handler.getName());
+            }
+        };
+    }
+
+    @Test
+    public void outerHandlerStalledAfterNestedDispatchIsReported() throws Exception {
+        final List<String> stalled = new CopyOnWriteArrayList<>();
+        HandlerProfiler profiler = new HandlerProfiler(TimeUnit.MILLISECONDS.toNanos(50));
+        profiler.setSlowHandlerListener(recording(stalled));
+
+        final Emitter emitter = new Emitter();
+        emitter.profiler = profiler;
+        emitter.on("inner", new Emitter.Listener() {
+            public void call(String name, JsonNode data) {
+            }
+        });
+        emitter.on("outer", new Emitter.Listener() {
+            public void call(String name, JsonNode data) {
+                emitter.handleEmit("inner", null);
+                try {
+                    Thread.sleep(400);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        try {
+            emitter.handleEmit("outer", null);
+        } finally {
+            profiler.close();
+        }
+
+        assertEquals(1, stalled.size());
+        assertEquals("outer", stalled.get(0));
+        assertEquals(1, profiler.getHandler(HandlerProfiler.Kind.EVENT, "outer").getOverruns());
+        assertEquals(0, profiler.getHandler(HandlerProfiler.Kind.EVENT, "inner").getOverruns());
+    }
+
+    @Test
+    public void handlerRunningAcrossCloseIsNotReportedAfterRestart() throws Exception {
+        List<String> stalled = new CopyOnWriteArrayList<>();
+        HandlerProfiler profiler = new HandlerProfiler(TimeUnit.MILLISECONDS.toNanos(20));
+        profiler.setSlowHandlerListener(recording(stalled));
+
+        HandlerStats early = profiler.getStats(HandlerProfiler.Kind.EVENT, "early");
+        long start = profiler.begin(early);
+        profiler.close();
+        profiler.end(early, start);
+
+        profiler.setSlowHandlerListener(recording(stalled));
+        try {
+            // Only this call is running, the one which ended while the watchdog was off must not be reported
+            HandlerStats late = profiler.getStats(HandlerProfiler.Kind.EVENT, "late");
+            long lateStart = profiler.begin(late);
+            Thread.sleep(100);
+            profiler.end(late, lateStart);
+            Thread.sleep(100);
+        } finally {
+            profiler.close();
+        }
+
+        assertEquals(1, stalled.size());
+        assertEquals("late", stalled.get(0));
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.sac;
+
+import com.neovisionaries.ws.client.WebSocketException;
+import com.neovisionaries.ws.client.WebSocketFrame;
+import io.github.sac.tools.StandInServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HandshakeTimingsTest {
+
+    private StandInServer server;
+    private final Semaphore authenticated = new Semaphore(0);
+    private final Semaphore disconnected = new Semaphore(0);
+
+    @Before
+    public void startServer() throws Exception {
+        server = new StandInServer(0, 0, StandInServer.createServerSslContext());
+        server.start();
+    }
+
+    @After
+    public void stopServer() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void reconnectResumesTlsSessionAndMeasuresResolution() throws Exception {
+        ConnectionContext context = new ConnectionContext(StandInServer.createClientSslContext());
+        Socket socket = new Socket(server.getUrl());
+        socket.setConnectionContext(context);
+        socket.setListener(new BasicListener() {
+            public void onConnected(Socket socket, Map<String, List<String>> headers) {
+            }
+
+            public void onDisconnected(Socket socket, WebSocketFrame serverCloseFrame, WebSocketFrame clientCloseFrame,
+                                       boolean closedByServer) {
+                disconnected.release();
+            }
+
+            public void onConnectError(Socket socket, WebSocketException exception) {
+            }
+
+            public void onAuthentication(Socket socket, Boolean status) {
+                authenticated.release();
+            }
+
+            public void onSetAuthToken(String token, Socket socket) {
+            }
+        });
+
+        socket.connect();
+        assertTrue(authenticated.tryAcquire(10, TimeUnit.SECONDS));
+        HandshakeTimings first = socket.getHandshakeTimings();
+        assertTrue(first.isSecure());
+        assertFalse(first.isSessionResumed());
+        assertTrue(first.getTotalTime() > 0);
+        assertTrue(first.getDnsTime() > 0);
+
+        socket.disconnect();
+        assertTrue(disconnected.tryAcquire(10, TimeUnit.SECONDS));
+        socket.connect();
+        assertTrue(authenticated.tryAcquire(10, TimeUnit.SECONDS));
+        HandshakeTimings second = socket.getHandshakeTimings();
+        socket.disconnect();
+
+        assertTrue(second.isSecure());
+        assertTrue(second.isSessionResumed());
+        assertTrue(second.getDnsTime() > 0);
+        assertEquals(1, context.getFullHandshakes());
+        assertEquals(1, context.getResumedHandshakes());
+    }
+}
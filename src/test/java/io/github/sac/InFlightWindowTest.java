@@ -0,0 +1,91 @@
+package io.github.sac;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InFlightWindowTest {
+
+    private static Runnable recording(final List<Integer> log, final int id) {
+        return new Runnable() {
+            public void run() {
+                log.add(id);
+            }
+        };
+    }
+
+    @Test
+    public void queuedRequestsRunInOrderAsSlotsAreReleased() {
+        InFlightWindow window = new InFlightWindow();
+        window.configure(2, false);
+        List<Integer> log = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(window.submit(recording(log, i)));
+        }
+        assertEquals(2, log.size());
+        assertEquals(2, window.getInFlight());
+        assertEquals(3, window.getQueued());
+
+        window.release();
+        window.release();
+        window.release();
+        assertEquals(5, log.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, (int) log.get(i));
+        }
+        assertEquals(2, window.getInFlight());
+        assertEquals(0, window.getQueued());
+
+        window.release();
+        window.release();
+        assertEquals(0, window.getInFlight());
+    }
+
+    @Test
+    public void rejectsWhenFull() {
+        InFlightWindow window = new InFlightWindow();
+        window.configure(1, true);
+        List<Integer> log = new ArrayList<>();
+
+        assertTrue(window.submit(recording(log, 0)));
+        assertFalse(window.submit(recording(log, 1)));
+        assertEquals(1, log.size());
+        assertEquals(0, window.getQueued());
+
+        window.release();
+        assertEquals(0, window.getInFlight());
+        assertTrue(window.submit(recording(log, 2)));
+    }
+
+    @Test
+    public void requestsReleasingWhileRunDrainWithoutRecursion() {
+        final InFlightWindow window = new InFlightWindow();
+        window.configure(1, false);
+        final List<Integer> log = new ArrayList<>();
+        window.submit(recording(log, -1));
+
+        // Each queued request passes its slot on right away, like a request cancelled while queued
+        int queued = 100000;
+        for (int i = 0; i < queued; i++) {
+            final int id = i;
+            window.submit(new Runnable() {
+                public void run() {
+                    log.add(id);
+                    window.release();
+                }
+            });
+        }
+
+        window.release();
+        assertEquals(queued + 1, log.size());
+        assertEquals(queued - 1, (int) log.get(queued));
+        assertEquals(0, window.getInFlight());
+        assertEquals(0, window.getQueued());
+    }
+}
@@ -0,0 +1,152 @@
+package io.github.sac;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.neovisionaries.ws.client.WebSocketException;
+import com.neovisionaries.ws.client.WebSocketFrame;
+import io.github.sac.tools.StandInServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InboundPipelineTest {
+
+    private static final int MESSAGES = 100;
+
+    private StandInServer server;
+    private final List<Socket> sockets = new ArrayList<>();
+    private final List<Integer> received = new ArrayList<>();
+    private final CountDownLatch done = new CountDownLatch(MESSAGES);
+
+    @Before
+    public void startServer() throws Exception {
+        server = new StandInServer(0, 0);
+        server.start();
+    }
+
+    @After
+    public void stopServer() throws Exception {
+        for (Socket socket : sockets) {
+            socket.disconnect();
+        }
+        server.stop();
+    }
+
+    private Socket connect() {
+        Socket socket = new Socket(server.getUrl());
+        socket.setListener(new BasicListener() {
+            public void onConnected(Socket socket, Map<String, List<String>> headers) {
+            }
+
+            public void onDisconnected(Socket socket, WebSocketFrame serverCloseFrame, WebSocketFrame clientCloseFrame,
+                                       boolean closedByServer) {
+            }
+
+            public void onConnectError(Socket socket, WebSocketException exception) {
+            }
+
+            public void onAuthentication(Socket socket, Boolean status) {
+            }
+
+            public void onSetAuthToken(String token, Socket socket) {
+            }
+        });
+        socket.connect();
+        sockets.add(socket);
+        return socket;
+    }
+
+    private void subscribe(Socket socket, Emitter.Listener listener) throws InterruptedException {
+        Socket.Channel channel = socket.createChannel("prices");
+        channel.onMessage(listener);
+        final CountDownLatch subscribed = new CountDownLatch(1);
+        channel.subscribe(new Ack() {
+            public void call(String name, JsonNode error, JsonNode data) {
+                subscribed.countDown();
+            }
+        });
+        assertTrue(subscribed.await(10, TimeUnit.SECONDS));
+    }
+
+    private void record(JsonNode data) {
+        synchronized (received) {
+            received.add(data.asInt());
+        }
+        done.countDown();
+    }
+
+    private void publishAll() throws InterruptedException {
+        Socket publisher = connect();
+        for (int i = 0; i < MESSAGES; i++) {
+            publisher.publish("prices", i);
+        }
+    }
+
+    private void assertReceivedInOrder() throws InterruptedException {
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        synchronized (received) {
+            assertEquals(MESSAGES, received.size());
+            for (int i = 0; i < MESSAGES; i++) {
+                assertEquals(i, (int) received.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void handlerDisablesThePipelineWhileTheRingIsFull() throws Exception {
+        final Socket socket = connect();
+        socket.enableInboundPipeline(2);
+        final PipelineStats stats = socket.getPipelineStats();
+        subscribe(socket, new Emitter.Listener() {
+            public void call(String name, JsonNode data) {
+                if (socket.getPipelineStats() != null) {
+                    // The reading thread waits for a free slot meanwhile
+                    long deadline = System.currentTimeMillis() + 5000;
+                    while (stats.getFullWaits() == 0 && System.currentTimeMillis() < deadline) {
+                        Thread.yield();
+                    }
+                    socket.disableInboundPipeline();
+                }
+                record(data);
+            }
+        });
+
+        publishAll();
+        assertReceivedInOrder();
+        assertTrue(stats.getFullWaits() > 0);
+        assertNull(socket.getPipelineStats());
+    }
+
+    @Test
+    public void pipelineEnabledAgainDispatchesAfterTheDisabledOne() throws Exception {
+        Socket socket = connect();
+        socket.enableInboundPipeline(MESSAGES);
+        subscribe(socket, new Emitter.Listener() {
+            public void call(String name, JsonNode data) {
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                record(data);
+            }
+        });
+
+        publishAll();
+        while (done.getCount() > MESSAGES - 5) {
+            Thread.sleep(1);
+        }
+        socket.disableInboundPipeline();
+        socket.enableInboundPipeline(MESSAGES);
+        assertReceivedInOrder();
+    }
+}
@@ -0,0 +1,109 @@
+package io.github.sac;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.neovisionaries.ws.client.WebSocketException;
+import com.neovisionaries.ws.client.WebSocketFrame;
+import io.github.sac.tools.StandInServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MigrationTest {
+
+    private StandInServer slow;
+    private StandInServer target;
+    private Socket socket;
+
+    @Before
+    public void startServers() throws Exception {
+        slow = new StandInServer(0, 0);
+        slow.setResponseDelay(60000);
+        slow.start();
+        target = new StandInServer(0, 0);
+        target.start();
+    }
+
+    @After
+    public void stopServers() throws Exception {
+        if (socket != null) {
+            socket.disconnect();
+        }
+        slow.stop();
+        target.stop();
+    }
+
+    @Test
+    public void requestsPendingOnThePreviousConnectionFailOnceItCloses() throws Exception {
+        final CountDownLatch migrated = new CountDownLatch(1);
+        socket = new Socket(slow.getUrl());
+        socket.setListener(new BasicListener() {
+            public void onConnected(Socket socket, Map<String, List<String>> headers) {
+            }
+
+            public void onDisconnected(Socket socket, WebSocketFrame serverCloseFrame, WebSocketFrame clientCloseFrame,
+                                       boolean closedByServer) {
+            }
+
+            public void onConnectError(Socket socket, WebSocketException exception) {
+            }
+
+            public void onAuthentication(Socket socket, Boolean status) {
+            }
+
+            public void onSetAuthToken(String token, Socket socket) {
+            }
+        });
+        socket.setMigrationListener(new MigrationListener() {
+            public void onMigrated(Socket socket, String url) {
+                migrated.countDown();
+            }
+
+            public void onMigrationFailed(Socket socket, String url, Exception cause) {
+            }
+        });
+        socket.setMaxInFlight(1, true);
+        socket.connect();
+
+        final CountDownLatch acked = new CountDownLatch(1);
+        final AtomicReference<JsonNode> ackError = new AtomicReference<>();
+        socket.emit("slow", 1, new Ack() {
+            public void call(String name, JsonNode error, JsonNode data) {
+                ackError.set(error);
+                acked.countDown();
+            }
+        });
+        AckFuture pending = socket.emitAsync("slow", 2, 0);
+
+        assertTrue(socket.migrate(target.getUrl()));
+        assertTrue(migrated.await(10, TimeUnit.SECONDS));
+
+        assertTrue(acked.await(10, TimeUnit.SECONDS));
+        assertEquals("BadConnectionError", ackError.get().path("name").asText());
+        try {
+            pending.get(10, TimeUnit.SECONDS);
+            fail("Request on the previous connection completed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+
+        // Its in-flight slot is released after the future completed, and requests are answered on the new connection
+        long deadline = System.currentTimeMillis() + 10000;
+        while (socket.getInFlightCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, socket.getInFlightCount());
+        assertEquals(3, socket.emitAsync("fast", 3, 0).get(10, TimeUnit.SECONDS).asInt());
+    }
+}
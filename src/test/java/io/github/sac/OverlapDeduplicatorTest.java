@@ -0,0 +1,107 @@
+package io.github.sac;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OverlapDeduplicatorTest {
+
+    private static final int PREVIOUS = 0;
+    private static final int TARGET = 1;
+
+    private static JsonNode text(String value) {
+        return JsonNodeFactory.instance.textNode(value);
+    }
+
+    @Test
+    public void publicationsOfPreviousConnectionAheadOfSubscriptionAreNotDeliveredAgain() {
+        OverlapDeduplicator deduplicator = new OverlapDeduplicator(100);
+
+        // Received before the new connection was subscribed
+        assertTrue(deduplicator.accept(PREVIOUS, "status", text("a")));
+        assertTrue(deduplicator.accept(PREVIOUS, "status", text("b")));
+
+        deduplicator.start("status");
+        assertFalse(deduplicator.accept(TARGET, "status", text("a")));
+        assertFalse(deduplicator.accept(TARGET, "status", text("b")));
+        assertTrue(deduplicator.accept(TARGET, "status", text("c")));
+        assertFalse(deduplicator.accept(PREVIOUS, "status", text("c")));
+        assertEquals(3, deduplicator.getSuppressed());
+    }
+
+    @Test
+    public void payloadRepeatedAcrossSwitchOverIsDeliveredOncePerCopy() {
+        OverlapDeduplicator deduplicator = new OverlapDeduplicator(100);
+
+        assertTrue(deduplicator.accept(PREVIOUS, "status", text("ok")));
+        deduplicator.start("status");
+        assertFalse(deduplicator.accept(TARGET, "status", text("ok")));
+
+        // Published again, the previous connection is closed meanwhile
+        assertTrue(deduplicator.accept(TARGET, "status", text("ok")));
+        assertTrue(deduplicator.accept(TARGET, "status", text("ok")));
+        assertEquals(1, deduplicator.getSuppressed());
+    }
+
+    @Test
+    public void identicalCopiesAreDeliveredOncePerCopy() {
+        OverlapDeduplicator deduplicator = new OverlapDeduplicator(100);
+        deduplicator.start("prices");
+
+        assertTrue(deduplicator.accept(PREVIOUS, "prices", text("10")));
+        assertTrue(deduplicator.accept(PREVIOUS, "prices", text("10")));
+        assertFalse(deduplicator.accept(TARGET, "prices", text("10")));
+        assertFalse(deduplicator.accept(TARGET, "prices", text("10")));
+        assertTrue(deduplicator.accept(TARGET, "prices", text("10")));
+        assertFalse(deduplicator.accept(PREVIOUS, "prices", text("10")));
+        assertEquals(3, deduplicator.getSuppressed());
+    }
+
+    @Test
+    public void targetPublicationsAheadOfSubscriptionAreLeftToPreviousConnection() {
+        OverlapDeduplicator deduplicator = new OverlapDeduplicator(100);
+
+        assertFalse(deduplicator.accept(TARGET, "news", text("a")));
+        assertTrue(deduplicator.accept(PREVIOUS, "news", text("a")));
+        deduplicator.start("news");
+        assertTrue(deduplicator.accept(TARGET, "news", text("b")));
+        assertFalse(deduplicator.accept(PREVIOUS, "news", text("b")));
+    }
+
+    @Test
+    public void targetPublicationAheadOfSubscriptionIsDeliveredByPreviousConnectionAfterwards() {
+        OverlapDeduplicator deduplicator = new OverlapDeduplicator(100);
+
+        assertFalse(deduplicator.accept(TARGET, "news", text("a")));
+        deduplicator.start("news");
+        assertTrue(deduplicator.accept(PREVIOUS, "news", text("a")));
+        assertEquals(1, deduplicator.getSuppressed());
+    }
+
+    @Test
+    public void channelsAreComparedSeparately() {
+        OverlapDeduplicator deduplicator = new OverlapDeduplicator(100);
+        deduplicator.start("first");
+        deduplicator.start("second");
+
+        assertTrue(deduplicator.accept(PREVIOUS, "first", text("x")));
+        assertTrue(deduplicator.accept(TARGET, "second", text("x")));
+        assertFalse(deduplicator.accept(TARGET, "first", text("x")));
+        assertFalse(deduplicator.accept(PREVIOUS, "second", text("x")));
+    }
+
+    @Test
+    public void publicationsBeyondMaxEntriesAreDeliveredUnchecked() {
+        OverlapDeduplicator deduplicator = new OverlapDeduplicator(1);
+        deduplicator.start("c");
+
+        assertTrue(deduplicator.accept(PREVIOUS, "c", text("1")));
+        assertTrue(deduplicator.accept(PREVIOUS, "c", text("2")));
+        assertTrue(deduplicator.accept(TARGET, "c", text("2")));
+        assertFalse(deduplicator.accept(TARGET, "c", text("1")));
+    }
+}
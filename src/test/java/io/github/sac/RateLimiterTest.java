@@ -0,0 +1,208 @@
+package io.github.sac;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.neovisionaries.ws.client.WebSocketException;
+import com.neovisionaries.ws.client.WebSocketFrame;
+import io.github.sac.tools.StandInServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+
+    // Low enough that no permit is added back while a test runs
+    private static final double SLOW = 0.001;
+
+    private StandInServer server;
+
+    @Before
+    public void startServer() throws Exception {
+        server = new StandInServer(0, 0);
+        server.start();
+    }
+
+    @After
+    public void stopServer() throws Exception {
+        server.stop();
+    }
+
+    private static Runnable counting(final AtomicInteger count) {
+        return new Runnable() {
+            public void run() {
+                count.incrementAndGet();
+            }
+        };
+    }
+
+    private static Runnable recording(final List<Integer> log, final int id, final CountDownLatch done) {
+        return new Runnable() {
+            public void run() {
+                synchronized (log) {
+                    log.add(id);
+                }
+                done.countDown();
+            }
+        };
+    }
+
+    @Test
+    public void rejectDropsMessagesBeyondTheBurst() {
+        RateLimiter limiter = new RateLimiter(SLOW, 3, RateLimiter.Policy.REJECT);
+        AtomicInteger sent = new AtomicInteger();
+        AtomicInteger dropped = new AtomicInteger();
+
+        for (int i = 0; i < 5; i++) {
+            limiter.submit("event", counting(sent), counting(dropped));
+        }
+
+        assertEquals(3, sent.get());
+        assertEquals(2, dropped.get());
+        assertEquals(3, limiter.getPermittedCount());
+        assertEquals(2, limiter.getRejectedCount());
+        assertEquals(0, limiter.getDelayedCount());
+    }
+
+    @Test
+    public void delaySchedulesMessagesUpToTheMaximumDelay() throws Exception {
+        RateLimiter limiter = new RateLimiter(10, 1, RateLimiter.Policy.DELAY).setMaxDelay(150);
+        List<Integer> log = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        AtomicInteger dropped = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            limiter.submit("event", recording(log, i, done), counting(dropped));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, log.size());
+        assertEquals(0, (int) log.get(0));
+        assertEquals(1, (int) log.get(1));
+        assertEquals(1, dropped.get());
+        assertEquals(1, limiter.getPermittedCount());
+        assertEquals(1, limiter.getDelayedCount());
+        assertEquals(1, limiter.getRejectedCount());
+    }
+
+    @Test
+    public void delayKeepsMessagesInOrderWhenTheSchedulerIsLate() throws Exception {
+        RateLimiter limiter = new RateLimiter(100000, 1, RateLimiter.Policy.DELAY);
+        final int count = 20000;
+        List<Integer> log = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(count);
+
+        for (int i = 0; i < count; i++) {
+            limiter.submit("event", recording(log, i, done), null);
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, (int) log.get(i));
+        }
+    }
+
+    @Test
+    public void coalesceSendsOnlyTheNewestPendingMessage() throws Exception {
+        RateLimiter limiter = new RateLimiter(10, 1, RateLimiter.Policy.COALESCE);
+        List<Integer> log = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        AtomicInteger replaced = new AtomicInteger();
+
+        for (int i = 0; i < 4; i++) {
+            limiter.submit("channel", recording(log, i, done), counting(replaced));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, log.size());
+        assertEquals(0, (int) log.get(0));
+        assertEquals(3, (int) log.get(1));
+        assertEquals(2, replaced.get());
+        assertEquals(1, limiter.getPermittedCount());
+        assertEquals(1, limiter.getDelayedCount());
+        assertEquals(2, limiter.getCoalescedCount());
+    }
+
+    @Test
+    public void refundReturnsATakenPermitButDoesNotExceedTheBurst() {
+        RateLimiter limiter = new RateLimiter(SLOW, 1, RateLimiter.Policy.REJECT);
+        limiter.refund();
+        assertEquals(0, limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire() > 0);
+
+        limiter.refund();
+        assertEquals(0, limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire() > 0);
+    }
+
+    @Test
+    public void messagesDroppedBySocketLimitDoNotCountAgainstEventLimit() throws Exception {
+        RateLimiter eventLimiter = new RateLimiter(SLOW, 5, RateLimiter.Policy.REJECT);
+        Socket socket = new Socket(server.getUrl());
+        socket.setEventRateLimit("chat*", eventLimiter);
+        socket.setRateLimit(new RateLimiter(SLOW, 2, RateLimiter.Policy.REJECT));
+        socket.setListener(new BasicListener() {
+            public void onConnected(Socket socket, Map<String, List<String>> headers) {
+            }
+
+            public void onDisconnected(Socket socket, WebSocketFrame serverCloseFrame, WebSocketFrame clientCloseFrame,
+                                       boolean closedByServer) {
+            }
+
+            public void onConnectError(Socket socket, WebSocketException exception) {
+            }
+
+            public void onAuthentication(Socket socket, Boolean status) {
+            }
+
+            public void onSetAuthToken(String token, Socket socket) {
+            }
+        });
+        socket.connect();
+
+        final CountDownLatch acked = new CountDownLatch(5);
+        final AtomicInteger failed = new AtomicInteger();
+        Ack ack = new Ack() {
+            public void call(String name, JsonNode error, JsonNode data) {
+                if (error != null && !error.isNull()) {
+                    failed.incrementAndGet();
+                }
+                acked.countDown();
+            }
+        };
+        for (int i = 0; i < 5; i++) {
+            socket.emit("chat.room", i, ack);
+        }
+
+        // The socket limit dropped three messages, so three permits of the event limit are left
+        socket.setRateLimit(null);
+        CountDownLatch resent = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            socket.emit("chat.room", i, recording(resent));
+        }
+
+        assertTrue(acked.await(10, TimeUnit.SECONDS));
+        assertTrue(resent.await(10, TimeUnit.SECONDS));
+        socket.disconnect();
+        assertEquals(3, failed.get());
+        assertEquals(0, eventLimiter.getRejectedCount());
+    }
+
+    private static Ack recording(final CountDownLatch acked) {
+        return new Ack() {
+            public void call(String name, JsonNode error, JsonNode data) {
+                if (error == null || error.isNull()) {
+                    acked.countDown();
+                }
+            }
+        };
+    }
+}
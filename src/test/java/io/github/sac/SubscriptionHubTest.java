@@ -0,0 +1,169 @@
+package io.github.sac;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.neovisionaries.ws.client.WebSocketException;
+import com.neovisionaries.ws.client.WebSocketFrame;
+import io.github.sac.tools.StandInServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SubscriptionHubTest {
+
+    private StandInServer server;
+    private final SubscriptionHub hub = new SubscriptionHub();
+    private final List<Socket> sockets = new ArrayList<>();
+
+    @Before
+    public void startServer() throws Exception {
+        server = new StandInServer(0, 0);
+        server.start();
+    }
+
+    @After
+    public void stopServer() throws Exception {
+        for (Socket socket : sockets) {
+            socket.disconnect();
+        }
+        server.stop();
+    }
+
+    private Socket connect(SubscriptionHub hub) {
+        Socket socket = new Socket(server.getUrl());
+        socket.setListener(new BasicListener() {
+            public void onConnected(Socket socket, Map<String, List<String>> headers) {
+            }
+
+            public void onDisconnected(Socket socket, WebSocketFrame serverCloseFrame, WebSocketFrame clientCloseFrame,
+                                       boolean closedByServer) {
+            }
+
+            public void onConnectError(Socket socket, WebSocketException exception) {
+            }
+
+            public void onAuthentication(Socket socket, Boolean status) {
+            }
+
+            public void onSetAuthToken(String token, Socket socket) {
+            }
+        });
+        socket.setSubscriptionHub(hub);
+        socket.connect();
+        sockets.add(socket);
+        return socket;
+    }
+
+    private static Socket.Channel subscribe(Socket socket, String name, final AtomicInteger received)
+            throws InterruptedException {
+        Socket.Channel channel = socket.createChannel(name);
+        channel.onMessage(new Emitter.Listener() {
+            public void call(String name, JsonNode data) {
+                received.incrementAndGet();
+            }
+        });
+        CountDownLatch subscribed = new CountDownLatch(1);
+        channel.subscribe(counting(subscribed));
+        assertTrue(subscribed.await(10, TimeUnit.SECONDS));
+        return channel;
+    }
+
+    private static Ack counting(final CountDownLatch latch) {
+        return new Ack() {
+            public void call(String name, JsonNode error, JsonNode data) {
+                if (error == null || error.isNull()) {
+                    latch.countDown();
+                }
+            }
+        };
+    }
+
+    private static void awaitCount(AtomicInteger count, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (count.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, count.get());
+    }
+
+    @Test
+    public void channelIsSubscribedUpstreamOnceAndDroppedWithTheLastSocket() throws Exception {
+        AtomicInteger first = new AtomicInteger();
+        AtomicInteger second = new AtomicInteger();
+        Socket.Channel firstChannel = subscribe(connect(hub), "prices", first);
+        Socket.Channel secondChannel = subscribe(connect(hub), "prices", second);
+        assertEquals(1, hub.getUpstreamCount());
+        assertEquals(2, hub.getLocalCount());
+        assertEquals(1, hub.getUpstreamSubscribeCount());
+
+        Socket publisher = connect(null);
+        publisher.publish("prices", 1);
+        awaitCount(first, 1);
+        awaitCount(second, 1);
+        assertEquals(2, hub.getDeliveredCount());
+
+        CountDownLatch unsubscribed = new CountDownLatch(2);
+        firstChannel.unsubscribe(counting(unsubscribed));
+        assertEquals(1, hub.getUpstreamCount());
+        assertEquals(1, hub.getLocalCount());
+        secondChannel.unsubscribe(counting(unsubscribed));
+        assertTrue(unsubscribed.await(10, TimeUnit.SECONDS));
+        assertEquals(0, hub.getUpstreamCount());
+        assertEquals(0, hub.getLocalCount());
+
+        // Published before one to a channel still subscribed, so it would have arrived by then
+        AtomicInteger other = new AtomicInteger();
+        subscribe(sockets.get(1), "other", other);
+        publisher.publish("prices", 2);
+        publisher.publish("other", 2);
+        awaitCount(other, 1);
+        assertEquals(1, first.get());
+        assertEquals(1, second.get());
+    }
+
+    @Test
+    public void ownerSubscribingAgainIsNotSubscribedUpstreamAgain() throws Exception {
+        Socket owner = connect(hub);
+        Socket.Channel channel = subscribe(owner, "prices", new AtomicInteger());
+
+        CountDownLatch subscribed = new CountDownLatch(2);
+        channel.subscribe(counting(subscribed));
+        channel.subscribe(counting(subscribed));
+        assertTrue(subscribed.await(10, TimeUnit.SECONDS));
+        assertEquals(1, hub.getUpstreamSubscribeCount());
+        assertEquals(1, hub.getLocalCount());
+    }
+
+    @Test
+    public void subscriptionIsHandedOverWhenTheOwnerDisconnects() throws Exception {
+        AtomicInteger first = new AtomicInteger();
+        AtomicInteger second = new AtomicInteger();
+        Socket owner = connect(hub);
+        subscribe(owner, "prices", first);
+        subscribe(connect(hub), "prices", second);
+
+        owner.disconnect();
+        assertEquals(1, hub.getHandoverCount());
+        assertEquals(2, hub.getUpstreamSubscribeCount());
+        assertEquals(1, hub.getLocalCount());
+
+        // Published until the new owner's subscription is confirmed upstream
+        Socket publisher = connect(null);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (second.get() == 0 && System.currentTimeMillis() < deadline) {
+            publisher.publish("prices", 1);
+            Thread.sleep(50);
+        }
+        assertTrue(second.get() > 0);
+        assertEquals(0, first.get());
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.sac.codec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class EnvelopeCompressingCodecTest {
+
+    private static class TrackingOutputStream extends ByteArrayOutputStream {
+        boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static void assertStreamLeftOpen(SocketClusterBufferCodec codec) throws Exception {
+        ObjectNode publish = JsonNodeFactory.instance.objectNode();
+        publish.put("event", "#publish");
+        publish.putObject("data").put("channel", "prices").put("data", 10);
+
+        // Compressing takes the envelope's fields apart
+        JsonNode expected = publish.deepCopy();
+        TrackingOutputStream out = new TrackingOutputStream();
+        codec.encode(publish, out);
+
+        assertFalse(codec.getClass().getSimpleName() + " closed the stream", out.closed);
+        JsonNode decoded = codec.decode(ByteBuffer.wrap(out.toByteArray()));
+        assertEquals(expected, decoded);
+    }
+
+    @Test
+    public void minBinLeavesCallersStreamOpen() throws Exception {
+        assertStreamLeftOpen(new MinBinCodec());
+    }
+
+    @Test
+    public void cborLeavesCallersStreamOpen() throws Exception {
+        assertStreamLeftOpen(new CborCodec());
+    }
+
+    @Test
+    public void smileLeavesCallersStreamOpen() throws Exception {
+        assertStreamLeftOpen(new SmileCodec());
+    }
+}
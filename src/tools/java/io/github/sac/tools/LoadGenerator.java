@@ -0,0 +1,224 @@
+package io.github.sac.tools;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.neovisionaries.ws.client.WebSocketException;
+import com.neovisionaries.ws.client.WebSocketFrame;
+import io.github.sac.Ack;
+import io.github.sac.BasicListener;
+import io.github.sac.Emitter;
+import io.github.sac.LatencyHistogram;
+import io.github.sac.Socket;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulates clients built on {@link Socket} emitting, publishing and subscribing at fixed rates, and reports
+ * throughput plus ack and publish latency distributions. Without a url a {@link StandInServer} is started, so
+ * publish latency is measured end to end within one JVM.
+ * <p>
+ * Options, all {@code --name=value}: url, clients (10), duration in seconds (30), emitRate and publishRate per
+ * client and second (10), channels (10), subscriptions per client (2), payload size in bytes (64).
+ */
+public class LoadGenerator {
+
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    private final Map<String, String> options;
+    private final LatencyHistogram ackLatency = new LatencyHistogram();
+    private final LatencyHistogram publishLatency = new LatencyHistogram();
+    private final AtomicLong emits = new AtomicLong();
+    private final AtomicLong acks = new AtomicLong();
+    private final AtomicLong ackErrors = new AtomicLong();
+    private final AtomicLong publishes = new AtomicLong();
+    private final AtomicLong deliveries = new AtomicLong();
+
+    public LoadGenerator(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.err.println("Unrecognized argument " + arg + ", expected --name=value");
+                System.exit(1);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new LoadGenerator(options).run(System.out);
+        System.exit(0);
+    }
+
+    private int intOption(String name, int defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    public void run(PrintStream out) throws Exception {
+        int clients = intOption("clients", 10);
+        int duration = intOption("duration", 30);
+        int emitRate = intOption("emitRate", 10);
+        int publishRate = intOption("publishRate", 10);
+        int channels = intOption("channels", 10);
+        int subscriptions = Math.min(channels, intOption("subscriptions", 2));
+        int payloadSize = intOption("payload", 64);
+
+        StandInServer server = null;
+        String url = options.get("url");
+        if (url == null) {
+            server = new StandInServer(0, 0);
+            server.start();
+            url = server.getUrl();
+        }
+
+        Socket first = null;
+        List<Socket> sockets = new ArrayList<>();
+        final CountDownLatch connected = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i++) {
+            Socket socket = new Socket(url);
+            if (first == null) {
+                // Logging is configured JVM wide
+                socket.disableLogging();
+                first = socket;
+            }
+            socket.setListener(new CountingListener(connected));
+            for (int k = 0; k < subscriptions; k++) {
+                socket.createChannel("load-" + (i + k) % channels).onMessage(new Emitter.Listener() {
+                    public void call(String name, JsonNode data) {
+                        publishLatency.record(System.nanoTime() - data.path("t").asLong());
+                        deliveries.incrementAndGet();
+                    }
+                });
+            }
+            socket.connectAsync();
+            sockets.add(socket);
+        }
+        if (!connected.await(30, TimeUnit.SECONDS)) {
+            out.println("Only " + (clients - connected.getCount()) + " of " + clients + " clients authenticated");
+        }
+
+        char[] padding = new char[payloadSize];
+        Arrays.fill(padding, 'x');
+        String pad = new String(padding);
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        Random random = new Random();
+        for (Socket socket : sockets) {
+            // Spread the clients over the period, so they don't send in lockstep
+            if (emitRate > 0) {
+                long period = TimeUnit.SECONDS.toNanos(1) / emitRate;
+                scheduler.scheduleAtFixedRate(emitTask(socket, pad), (long) (random.nextDouble() * period), period,
+                        TimeUnit.NANOSECONDS);
+            }
+            if (publishRate > 0) {
+                long period = TimeUnit.SECONDS.toNanos(1) / publishRate;
+                scheduler.scheduleAtFixedRate(publishTask(socket, pad, channels), (long) (random.nextDouble() * period),
+                        period, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        long start = System.nanoTime();
+        for (int second = 5; second <= duration; second += 5) {
+            Thread.sleep(5000);
+            out.println(String.format(Locale.US, "%4ds  emits %8d  acks %8d  publishes %8d  deliveries %8d",
+                    second, emits.get(), acks.get(), publishes.get(), deliveries.get()));
+        }
+        Thread.sleep(duration % 5 * 1000L);
+        scheduler.shutdownNow();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        // Let in-flight acks and deliveries arrive
+        Thread.sleep(1000);
+
+        out.println();
+        out.println(String.format(Locale.US, "clients %d, %.1f s: emits %.0f/s, acks %.0f/s (%d errors), "
+                        + "publishes %.0f/s, deliveries %.0f/s", clients, seconds, emits.get() / seconds,
+                acks.get() / seconds, ackErrors.get(), publishes.get() / seconds, deliveries.get() / seconds));
+        out.println();
+        out.println("Ack latency (ms)");
+        ackLatency.outputPercentileDistribution(out, NANOS_PER_MILLI);
+        out.println();
+        out.println("Publish latency (ms)");
+        publishLatency.outputPercentileDistribution(out, NANOS_PER_MILLI);
+
+        for (Socket socket : sockets) {
+            socket.disconnect();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private Runnable emitTask(final Socket socket, final String pad) {
+        return new Runnable() {
+            public void run() {
+                final long sent = System.nanoTime();
+                socket.emit("load", pad, new Ack() {
+                    public void call(String name, JsonNode error, JsonNode data) {
+                        if (error != null && !error.isNull()) {
+                            ackErrors.incrementAndGet();
+                            return;
+                        }
+                        ackLatency.record(System.nanoTime() - sent);
+                        acks.incrementAndGet();
+                    }
+                });
+                emits.incrementAndGet();
+            }
+        };
+    }
+
+    private Runnable publishTask(final Socket socket, final String pad, final int channels) {
+        final Random random = new Random();
+        return new Runnable() {
+            public void run() {
+                ObjectNode data = JsonNodeFactory.instance.objectNode();
+                data.put("t", System.nanoTime());
+                data.put("pad", pad);
+                socket.publish("load-" + random.nextInt(channels), data);
+                publishes.incrementAndGet();
+            }
+        };
+    }
+
+    private static class CountingListener implements BasicListener {
+
+        private final CountDownLatch authenticated;
+
+        CountingListener(CountDownLatch authenticated) {
+            this.authenticated = authenticated;
+        }
+
+        public void onConnected(Socket socket, Map<String, List<String>> headers) {
+        }
+
+        public void onDisconnected(Socket socket, WebSocketFrame serverCloseFrame, WebSocketFrame clientCloseFrame,
+                                   boolean closedByServer) {
+        }
+
+        public void onConnectError(Socket socket, WebSocketException exception) {
+            System.err.println("Connect error " + exception);
+        }
+
+        public void onAuthentication(Socket socket, Boolean status) {
+            authenticated.countDown();
+        }
+
+        public void onSetAuthToken(String token, Socket socket) {
+        }
+    }
+}
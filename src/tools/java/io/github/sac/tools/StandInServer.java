@@ -0,0 +1,504 @@
+package io.github.sac.tools;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local WebSocket server speaking enough of the SocketCluster protocol for load tests without a cluster:
+ * handshake, #1/#2 heartbeat, subscribe, unsubscribe, publish fan-out and acks. Emitted events are acknowledged
+ * with their data. Only JSON text messages are understood, permessage-deflate is not negotiated.
+ * <p>
+ * With an SSLContext connections are secure, e.g. to measure TLS session resumption. {@link #createServerSslContext()}
+ * uses a bundled self-signed certificate for localhost, trusted by {@link #createClientSslContext()}.
+ */
+public class StandInServer {
+
+    private final static Logger LOGGER = Logger.getLogger(StandInServer.class.getName());
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int MAX_MESSAGE_SIZE = 16 * 1024 * 1024;
+    private static final String KEY_STORE = "standin.jks";
+    private static final char[] KEY_STORE_PASSWORD = "standin".toCharArray();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ConcurrentMap<String, Set<Connection>> subscriptions = new ConcurrentHashMap<>();
+    private final Set<Connection> connections = Collections.newSetFromMap(new ConcurrentHashMap<Connection, Boolean>());
+    private final AtomicInteger connectionIds = new AtomicInteger();
+    private final AtomicLong messagesIn = new AtomicLong();
+    private final AtomicLong messagesOut = new AtomicLong();
+    private final int port;
+    private final long pingInterval;
+    private final SSLContext sslContext;
+    private ServerSocket serverSocket;
+    private Timer pingTimer;
+    private Timer responseTimer;
+    private volatile long responseDelay;
+
+    /**
+     * @param port - port to listen on, 0 for any free port
+     * @param pingInterval - interval of #1 heartbeats in Milliseconds, 0 to disable
+     */
+    public StandInServer(int port, long pingInterval) {
+        this(port, pingInterval, null);
+    }
+
+    /**
+     * @param sslContext - context providing the server certificate, null for plain connections
+     */
+    public StandInServer(int port, long pingInterval, SSLContext sslContext) {
+        this.port = port;
+        this.pingInterval = pingInterval;
+        this.sslContext = sslContext;
+    }
+
+    /**
+     * Arguments: port (8000), --tls to accept secure connections with the bundled certificate
+     */
+    public static void main(String[] args) throws IOException, GeneralSecurityException {
+        int port = 8000;
+        boolean tls = false;
+        for (String arg : args) {
+            if (arg.equals("--tls")) {
+                tls = true;
+            } else {
+                port = Integer.parseInt(arg);
+            }
+        }
+        StandInServer server = new StandInServer(port, 25000, tls ? createServerSslContext() : null);
+        server.start();
+        System.out.println("Listening on " + server.getUrl());
+    }
+
+    /**
+     * @return context serving the bundled self-signed certificate for localhost and 127.0.0.1
+     */
+    public static SSLContext createServerSslContext() throws IOException, GeneralSecurityException {
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(loadKeyStore(), KEY_STORE_PASSWORD);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), null, null);
+        return context;
+    }
+
+    /**
+     * @return context trusting the bundled certificate only, e.g. for a {@link io.github.sac.ConnectionContext}
+     */
+    public static SSLContext createClientSslContext() throws IOException, GeneralSecurityException {
+        TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(loadKeyStore());
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, trustManagers.getTrustManagers(), null);
+        return context;
+    }
+
+    private static KeyStore loadKeyStore() throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream in = StandInServer.class.getResourceAsStream(KEY_STORE);
+        if (in == null) {
+            throw new IOException("Missing " + KEY_STORE);
+        }
+        try {
+            keyStore.load(in, KEY_STORE_PASSWORD);
+        } finally {
+            in.close();
+        }
+        return keyStore;
+    }
+
+    public synchronized void start() throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        serverSocket = sslContext == null ? new ServerSocket(port, 1024, loopback)
+                : sslContext.getServerSocketFactory().createServerSocket(port, 1024, loopback);
+        Thread acceptor = new Thread(new Runnable() {
+            public void run() {
+                accept();
+            }
+        }, "StandInServer-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        if (pingInterval > 0) {
+            pingTimer = new Timer("StandInServer-ping", true);
+            pingTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    byte[] ping = "#1".getBytes(UTF_8);
+                    for (Connection connection : connections) {
+                        connection.sendText(ping);
+                    }
+                }
+            }, pingInterval, pingInterval);
+        }
+    }
+
+    public synchronized void stop() throws IOException {
+        if (pingTimer != null) {
+            pingTimer.cancel();
+        }
+        if (responseTimer != null) {
+            responseTimer.cancel();
+        }
+        serverSocket.close();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Acknowledge emitted events late, like a slow backend
+     * @param responseDelay - delay in Milliseconds, 0 to respond right away
+     */
+    public synchronized void setResponseDelay(long responseDelay) {
+        if (responseDelay > 0 && responseTimer == null) {
+            responseTimer = new Timer("StandInServer-response", true);
+        }
+        this.responseDelay = responseDelay;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public String getUrl() {
+        return (sslContext == null ? "ws" : "wss") + "://localhost:" + getPort() + "/socketcluster/";
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public long getMessagesIn() {
+        return messagesIn.get();
+    }
+
+    public long getMessagesOut() {
+        return messagesOut.get();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    LOGGER.log(Level.WARNING, "Accept failed", e);
+                }
+                continue;
+            }
+
+            Thread reader = new Thread(new Runnable() {
+                public void run() {
+                    Connection connection = null;
+                    try {
+                        connection = new Connection(socket, connectionIds.incrementAndGet());
+                        connections.add(connection);
+                        connection.read();
+                    } catch (EOFException | SocketException e) {
+                        // Client went away
+                    } catch (IOException e) {
+                        LOGGER.log(Level.WARNING, "Connection failed", e);
+                    } finally {
+                        if (connection != null) {
+                            remove(connection);
+                            connection.close();
+                        }
+                    }
+                }
+            }, "StandInServer-connection");
+            reader.setDaemon(true);
+            reader.start();
+        }
+    }
+
+    private void remove(Connection connection) {
+        connections.remove(connection);
+        for (Set<Connection> subscribers : subscriptions.values()) {
+            subscribers.remove(connection);
+        }
+    }
+
+    private void onMessage(Connection connection, byte[] message) throws IOException {
+        messagesIn.incrementAndGet();
+        if (message.length == 2 && message[0] == '#' && message[1] == '2') {
+            return;
+        }
+
+        JsonNode request = mapper.readTree(message);
+        String event = request.path("event").asText();
+        JsonNode data = request.path("data");
+        long cid = request.path("cid").asLong(-1);
+
+        switch (event) {
+            case "#handshake":
+                ObjectNode status = mapper.createObjectNode();
+                status.put("id", String.valueOf(connection.id));
+                status.put("isAuthenticated", false);
+                status.put("pingTimeout", pingInterval > 0 ? 2 * pingInterval : 20000);
+                respond(connection, cid, status);
+                return;
+            case "#subscribe":
+                String channel = data.path("channel").asText();
+                Set<Connection> subscribers = subscriptions.get(channel);
+                if (subscribers == null) {
+                    subscriptions.putIfAbsent(channel,
+                            Collections.newSetFromMap(new ConcurrentHashMap<Connection, Boolean>()));
+                    subscribers = subscriptions.get(channel);
+                }
+                subscribers.add(connection);
+                respond(connection, cid, null);
+                return;
+            case "#unsubscribe":
+                // Unlike #subscribe the channel is sent as the data itself
+                Set<Connection> current = subscriptions.get(data.asText());
+                if (current != null) {
+                    current.remove(connection);
+                }
+                respond(connection, cid, null);
+                return;
+            case "#publish":
+                publish(data.path("channel").asText(), data.get("data"));
+                respond(connection, cid, null);
+                return;
+            default:
+                long delay = responseDelay;
+                if (delay > 0) {
+                    respondLater(connection, cid, data, delay);
+                } else {
+                    respond(connection, cid, data);
+                }
+        }
+    }
+
+    private synchronized void respondLater(final Connection connection, final long cid, final JsonNode data,
+                                           long delay) {
+        responseTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    respond(connection, cid, data);
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Unable to respond to " + cid, e);
+                }
+            }
+        }, delay);
+    }
+
+    private void publish(String channel, JsonNode data) throws IOException {
+        Set<Connection> subscribers = subscriptions.get(channel);
+        if (subscribers == null || subscribers.isEmpty()) {
+            return;
+        }
+
+        ObjectNode publication = mapper.createObjectNode();
+        publication.put("event", "#publish");
+        ObjectNode body = publication.putObject("data");
+        body.put("channel", channel);
+        body.set("data", data);
+        // Encoded once for all subscribers
+        byte[] message = mapper.writeValueAsBytes(publication);
+        for (Connection subscriber : subscribers) {
+            subscriber.sendText(message);
+        }
+    }
+
+    private void respond(Connection connection, long cid, JsonNode data) throws IOException {
+        if (cid < 0) {
+            return;
+        }
+        ObjectNode response = mapper.createObjectNode();
+        response.put("rid", cid);
+        if (data != null && !data.isMissingNode()) {
+            response.set("data", data);
+        }
+        connection.sendText(mapper.writeValueAsBytes(response));
+    }
+
+    private static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((key + WEBSOCKET_GUID).getBytes(UTF_8));
+            return Base64Variants.MIME_NO_LINEFEEDS.encode(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private class Connection {
+
+        private final Socket socket;
+        private final int id;
+        private final DataInputStream in;
+        private final OutputStream out;
+
+        Connection(Socket socket, int id) throws IOException {
+            this.socket = socket;
+            this.id = id;
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new BufferedOutputStream(socket.getOutputStream());
+            upgrade();
+        }
+
+        private void upgrade() throws IOException {
+            String key = null;
+            String line;
+            while (!(line = readLine(in)).isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key")) {
+                    key = line.substring(colon + 1).trim();
+                }
+            }
+            if (key == null) {
+                throw new IOException("Not a websocket upgrade request");
+            }
+
+            String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                    + "Upgrade: websocket\r\n"
+                    + "Connection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n\r\n";
+            synchronized (out) {
+                out.write(response.getBytes(UTF_8));
+                out.flush();
+            }
+        }
+
+        void read() throws IOException {
+            ByteArrayOutputStream message = new ByteArrayOutputStream();
+            int messageOpcode = -1;
+
+            while (true) {
+                int first = in.readUnsignedByte();
+                int second = in.readUnsignedByte();
+                boolean fin = (first & 0x80) != 0;
+                int opcode = first & 0x0f;
+                long length = second & 0x7f;
+                if (length == 126) {
+                    length = in.readUnsignedShort();
+                } else if (length == 127) {
+                    length = in.readLong();
+                }
+                if (length > MAX_MESSAGE_SIZE) {
+                    throw new IOException("Frame too large: " + length);
+                }
+
+                byte[] mask = new byte[4];
+                if ((second & 0x80) != 0) {
+                    in.readFully(mask);
+                }
+                byte[] payload = new byte[(int) length];
+                in.readFully(payload);
+                for (int i = 0; i < payload.length; i++) {
+                    payload[i] ^= mask[i & 3];
+                }
+
+                switch (opcode) {
+                    case 0x8:
+                        sendFrame(0x8, payload);
+                        return;
+                    case 0x9:
+                        sendFrame(0xa, payload);
+                        continue;
+                    case 0xa:
+                        continue;
+                    case 0x0:
+                        break;
+                    default:
+                        messageOpcode = opcode;
+                        message.reset();
+                }
+                message.write(payload);
+
+                if (fin && messageOpcode == 0x1) {
+                    onMessage(this, message.toByteArray());
+                }
+            }
+        }
+
+        void sendText(byte[] payload) {
+            try {
+                sendFrame(0x1, payload);
+                messagesOut.incrementAndGet();
+            } catch (IOException e) {
+                // Reader notices the broken connection
+                close();
+            }
+        }
+
+        private void sendFrame(int opcode, byte[] payload) throws IOException {
+            synchronized (out) {
+                out.write(0x80 | opcode);
+                if (payload.length < 126) {
+                    out.write(payload.length);
+                } else if (payload.length < 65536) {
+                    out.write(126);
+                    out.write(payload.length >>> 8);
+                    out.write(payload.length);
+                } else {
+                    out.write(127);
+                    for (int shift = 56; shift >= 0; shift -= 8) {
+                        out.write((int) ((long) payload.length >>> shift));
+                    }
+                }
+                out.write(payload);
+                out.flush();
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                throw new EOFException();
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+}
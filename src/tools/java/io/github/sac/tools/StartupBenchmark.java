@@ -0,0 +1,162 @@
+package io.github.sac.tools;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.neovisionaries.ws.client.WebSocketException;
+import com.neovisionaries.ws.client.WebSocketFrame;
+import io.github.sac.BasicListener;
+import io.github.sac.Emitter;
+import io.github.sac.Socket;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures cold start of a client: each run starts a fresh JVM, which creates a {@link Socket}, connects to a
+ * {@link StandInServer} and publishes to a channel it subscribed to. Reported are the time until the Socket is
+ * created, until the first message is received back, and the number of classes loaded by then.
+ * <p>
+ * Options, all {@code --name=value}: runs (10), before, a class path of another build put ahead of this one,
+ * e.g. an earlier release jar, to compare against it.
+ */
+public class StartupBenchmark {
+
+    private static final String CHILD = "--child=";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 1 && args[0].startsWith(CHILD)) {
+            runChild(args[0].substring(CHILD.length()));
+            System.exit(0);
+        }
+
+        int runs = 10;
+        String before = null;
+        for (String arg : args) {
+            if (arg.startsWith("--runs=")) {
+                runs = Integer.parseInt(arg.substring("--runs=".length()));
+            } else if (arg.startsWith("--before=")) {
+                before = arg.substring("--before=".length());
+            } else {
+                System.err.println("Unrecognized argument " + arg + ", expected --runs=n or --before=classpath");
+                System.exit(1);
+            }
+        }
+
+        StandInServer server = new StandInServer(0, 0);
+        server.start();
+        String classPath = System.getProperty("java.class.path");
+        if (before != null) {
+            classPath = before + File.pathSeparator + classPath;
+        }
+        run(System.out, server.getUrl(), classPath, runs);
+        server.stop();
+        System.exit(0);
+    }
+
+    private static void run(PrintStream out, String url, String classPath, int runs) throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Long> created = new ArrayList<>();
+        List<Long> firstMessage = new ArrayList<>();
+        List<Long> classes = new ArrayList<>();
+
+        // The first run warms up the file system cache only
+        for (int run = 0; run <= runs; run++) {
+            Process child = new ProcessBuilder(java, "-cp", classPath, StartupBenchmark.class.getName(), CHILD + url)
+                    .redirectErrorStream(true).start();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(child.getInputStream(), "UTF-8"));
+            String result = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("result ")) {
+                    result = line;
+                }
+            }
+            child.waitFor();
+            if (result == null) {
+                throw new IllegalStateException("Run " + run + " failed with exit code " + child.exitValue());
+            }
+            if (run == 0) {
+                continue;
+            }
+
+            String[] values = result.split(" ");
+            created.add(Long.parseLong(values[1]));
+            firstMessage.add(Long.parseLong(values[2]));
+            classes.add(Long.parseLong(values[3]));
+            out.println(String.format(Locale.US, "run %2d: created %6.1f ms, first message %6.1f ms, %5d classes",
+                    run, Long.parseLong(values[1]) / 1e6, Long.parseLong(values[2]) / 1e6,
+                    Long.parseLong(values[3])));
+        }
+
+        out.println(String.format(Locale.US, "median: created %6.1f ms, first message %6.1f ms, %5d classes",
+                median(created) / 1e6, median(firstMessage) / 1e6, median(classes)));
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    /**
+     * Times are taken from JVM start, as reported by the runtime
+     */
+    private static void runChild(String url) throws Exception {
+        long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(
+                ManagementFactory.getRuntimeMXBean().getUptime());
+
+        Socket socket = new Socket(url);
+        long created = System.nanoTime() - start;
+        socket.disableLogging();
+
+        final CountDownLatch authenticated = new CountDownLatch(1);
+        final CountDownLatch received = new CountDownLatch(1);
+        socket.setListener(new BasicListener() {
+            public void onConnected(Socket socket, Map<String, List<String>> headers) {
+            }
+
+            public void onDisconnected(Socket socket, WebSocketFrame serverCloseFrame,
+                                       WebSocketFrame clientCloseFrame, boolean closedByServer) {
+            }
+
+            public void onConnectError(Socket socket, WebSocketException exception) {
+            }
+
+            public void onAuthentication(Socket socket, Boolean status) {
+                authenticated.countDown();
+            }
+
+            public void onSetAuthToken(String token, Socket socket) {
+            }
+        });
+        Socket.Channel channel = socket.createChannel("startup");
+        channel.onMessage(new Emitter.Listener() {
+            public void call(String name, JsonNode data) {
+                received.countDown();
+            }
+        });
+        socket.connect();
+        if (!authenticated.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Not authenticated");
+        }
+        // Subscribed right after authentication, retry until the subscription is in place
+        do {
+            channel.publish(JsonNodeFactory.instance.objectNode().put("sent", System.currentTimeMillis()));
+        } while (!received.await(20, TimeUnit.MILLISECONDS));
+        long firstMessage = System.nanoTime() - start;
+
+        long classes = ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount();
+        System.out.println("result " + created + " " + firstMessage + " " + classes);
+        socket.disconnect();
+    }
+}